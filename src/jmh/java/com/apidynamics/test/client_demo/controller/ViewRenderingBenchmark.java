@@ -0,0 +1,65 @@
+package com.apidynamics.test.client_demo.controller;
+
+import com.apidynamics.test.client_demo.model.TimestampApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of producing the /timestamp response body: Thymeleaf page with the template cache off (the default
+ * configuration) and on (prod profile), against the JSON body of /api/timestamp.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ViewRenderingBenchmark {
+
+    private static final String TIMESTAMP = "2025-01-01T12:00:00.000Z";
+
+    private SpringTemplateEngine uncachedEngine;
+    private SpringTemplateEngine cachedEngine;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        uncachedEngine = templateEngine(false);
+        cachedEngine = templateEngine(true);
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public String timestampPageUncached() {
+        return uncachedEngine.process("timestamp", context());
+    }
+
+    @Benchmark
+    public String timestampPageCached() {
+        return cachedEngine.process("timestamp", context());
+    }
+
+    @Benchmark
+    public byte[] timestampJson() throws Exception {
+        return objectMapper.writeValueAsBytes(new TimestampApiResponse(TIMESTAMP, "SUCCESS", 1, null, null));
+    }
+
+    private static Context context() {
+        Context context = new Context();
+        context.setVariable("appName", "client-demo");
+        context.setVariable("timestamp", TIMESTAMP);
+        return context;
+    }
+
+    private static SpringTemplateEngine templateEngine(boolean cacheable) {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCacheable(cacheable);
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+}
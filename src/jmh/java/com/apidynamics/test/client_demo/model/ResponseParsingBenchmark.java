@@ -0,0 +1,67 @@
+package com.apidynamics.test.client_demo.model;
+
+import com.apidynamics.test.client_demo.service.ResponseBodyParser;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive Authentication response parsing, generic Map binding vs the field-selective streaming parsers,
+ * for the timestamp, generateClientTotp (totp*) and validateClientTotp (validation*) responses.
+ * Run with -prof gc (default in the jmh gradle extension) to compare allocation per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResponseParsingBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_JSON = new TypeReference<>() {};
+
+    private static final Map<String, String> PAYLOADS = Map.ofEntries(
+            Map.entry("timestamp", "{\"timestamp\":\"2024-05-01T10:15:30.123Z\"}"),
+            Map.entry("challenge", "{\"error\":\"TOTP required\",\"transaction_id\":\"6f1c2b9e-7d43-4a61-9a0e-2f6f4c1d8b11\"}"),
+            Map.entry("rejected", "{\"error\":\"Unauthorized\",\"validation_result\":{\"score\":87,\"decision\":\"DENY\"}}"),
+            Map.entry("rejectedVerbose", "{\"error\":\"Unauthorized\",\"path\":\"/api/timestamp\",\"status\":401,"
+                    + "\"validation_result\":{\"score\":87,\"decision\":\"DENY\",\"rules\":[{\"id\":\"geo-velocity\",\"weight\":40,\"matched\":true},"
+                    + "{\"id\":\"new-device\",\"weight\":25,\"matched\":true},{\"id\":\"tor-exit\",\"weight\":60,\"matched\":false}],"
+                    + "\"signals\":{\"ip\":\"203.0.113.7\",\"asn\":64496,\"country\":\"NL\",\"user_agent\":\"Mozilla/5.0 (X11; Linux x86_64)\"}},"
+                    + "\"transaction_id\":null,\"trace\":\"a4b1c7d2e9f0\"}"),
+            Map.entry("totp", "{\"totp\":\"287082\",\"transaction_id\":\"6f1c2b9e-7d43-4a61-9a0e-2f6f4c1d8b11\",\"expires_in\":30}"),
+            Map.entry("totpError", "{\"error\":\"Not Found\",\"message\":\"unknown transaction\",\"path\":\"/adaptiveAuthentication/generateClientTotp\",\"status\":404}"),
+            Map.entry("validationAllowed", "{\"validation_result\":{\"score\":100,\"decision\":\"ALLOW\"},\"transaction_id\":\"6f1c2b9e-7d43-4a61-9a0e-2f6f4c1d8b11\"}"),
+            Map.entry("validationDenied", "{\"error\":\"invalid totp\",\"validation_result\":{\"score\":0,\"decision\":\"DENY\"}}"));
+
+    @Param({"timestamp", "challenge", "rejected", "rejectedVerbose", "totp", "totpError", "validationAllowed", "validationDenied"})
+    public String payload;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] body;
+    // parser of the endpoint the payload comes from
+    private ResponseBodyParser<?> parser;
+
+    @Setup
+    public void setUp() {
+        body = PAYLOADS.get(payload).getBytes(StandardCharsets.UTF_8);
+        parser = payload.startsWith("totp") ? AdaptiveAuthResponseParser::clientTotp
+                : payload.startsWith("validation") ? AdaptiveAuthResponseParser::totpValidation
+                : AdaptiveAuthResponseParser::timestamp;
+    }
+
+    @Benchmark
+    public Map<String, Object> map() throws IOException {
+        return objectMapper.readValue(body, MAP_JSON);
+    }
+
+    @Benchmark
+    public Object typed() throws IOException {
+        try (JsonParser jsonParser = objectMapper.createParser(body)) {
+            return parser.parse(jsonParser, null);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.apidynamics.test.client_demo.repository;
+
+import com.apidynamics.test.client_demo.entity.ApiClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Offline {@link ApiClientRepository} backed by a map, for benchmarks
+ */
+public final class InMemoryApiClientRepository implements ApiClientRepository {
+
+    private final Map<Integer, ApiClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * @param clients - initial clients
+     */
+    public InMemoryApiClientRepository(ApiClient... clients) {
+        for (ApiClient client : clients) {
+            this.clients.put(client.getId(), client);
+        }
+    }
+
+    @Override
+    public <S extends ApiClient> S save(S entity) {
+        if (entity.getId() == null) {
+            throw new IllegalArgumentException("ApiClient id is required");
+        }
+        clients.put(entity.getId(), entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends ApiClient> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        for (S entity : entities) {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<ApiClient> findById(Integer id) {
+        return Optional.ofNullable(clients.get(id));
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return clients.containsKey(id);
+    }
+
+    @Override
+    public List<ApiClient> findAll() {
+        return new ArrayList<>(clients.values());
+    }
+
+    @Override
+    public List<ApiClient> findAllById(Iterable<Integer> ids) {
+        List<ApiClient> found = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(found::add));
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return clients.size();
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        clients.remove(id);
+    }
+
+    @Override
+    public void delete(ApiClient entity) {
+        deleteById(entity.getId());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Integer> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends ApiClient> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        clients.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryApiClientRepository" + clients.keySet();
+    }
+}
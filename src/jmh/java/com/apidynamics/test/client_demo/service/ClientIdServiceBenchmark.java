@@ -0,0 +1,42 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.entity.ApiClient;
+import com.apidynamics.test.client_demo.repository.InMemoryApiClientRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client id resolution against an in-memory repository, with and without a stored client row
+ * and with and without the near-cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClientIdServiceBenchmark {
+
+    @Param({"true", "false"})
+    public boolean storedClient;
+
+    // 0 disables the near-cache, every call reads the repository
+    @Param({"0", "5000"})
+    public long cacheTtlMs;
+
+    private ClientIdService clientIdService;
+
+    @Setup
+    public void setUp() {
+        ApiClient[] clients = storedClient
+                ? new ApiClient[]{ApiClient.builder().id(1).publicKey("stored-client-public-key").build()}
+                : new ApiClient[0];
+        clientIdService = new ClientIdService(new InMemoryApiClientRepository(clients));
+        ReflectionTestUtils.setField(clientIdService, "apiDynamicsClientId", "default-client-public-key");
+        ReflectionTestUtils.setField(clientIdService, "clientIdCacheTtlMs", cacheTtlMs);
+    }
+
+    @Benchmark
+    public String getClientId() {
+        return clientIdService.getClientId();
+    }
+}
@@ -0,0 +1,102 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relaying an upstream JSON body: buffered, bound to a Map and serialized again (the /api/httpbin path)
+ * vs copied through a pooled buffer ({@link UpstreamPassthrough}, the /api/httpbin/stream path).
+ * Run with -prof gc to compare allocation per response, the client output is discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PassthroughBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_JSON = new TypeReference<>() {};
+
+    @Param({"1024", "65536", "1048576"})
+    public int bodySize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UpstreamPassthrough passthrough = new UpstreamPassthrough("Content-Type,Content-Length", 16384, 64);
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; json.length() < bodySize - 64; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\",\"active\":true}");
+        }
+        body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long mapped() throws IOException {
+        MockClientHttpResponse source = upstreamResponse();
+        DiscardingResponse target = new DiscardingResponse();
+        Map<String, Object> value = objectMapper.readValue(source.getBody().readAllBytes(), MAP_JSON);
+        target.setStatus(source.getStatusCode().value());
+        target.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(target.getOutputStream(), value);
+        return target.out.written;
+    }
+
+    @Benchmark
+    public long streamed() throws IOException {
+        return passthrough.copy(upstreamResponse(), new DiscardingResponse());
+    }
+
+    private MockClientHttpResponse upstreamResponse() {
+        MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setContentLength(body.length);
+        return response;
+    }
+
+    private static final class DiscardingResponse extends MockHttpServletResponse {
+
+        private final DiscardingOutputStream out = new DiscardingOutputStream();
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+
+    private static final class DiscardingOutputStream extends ServletOutputStream {
+
+        private long written;
+
+        @Override
+        public void write(int b) {
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
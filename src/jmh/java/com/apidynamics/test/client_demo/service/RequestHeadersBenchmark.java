@@ -0,0 +1,64 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.repository.InMemoryApiClientRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound header collection for the upstream call, per number of inbound headers.
+ * The request is bound to each benchmark thread like the servlet container would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RequestHeadersBenchmark {
+
+    private static final String[] BROWSER_HEADERS = {
+            "Host", "Connection", "User-Agent", "Accept", "Accept-Language", "Accept-Encoding",
+            "Referer", "Cookie", "Upgrade-Insecure-Requests", "Sec-Fetch-Dest", "Sec-Fetch-Mode",
+            "Sec-Fetch-Site", "Sec-Fetch-User", "Sec-Ch-Ua", "Sec-Ch-Ua-Mobile", "Sec-Ch-Ua-Platform",
+            "Cache-Control", "X-Forwarded-For", "X-Forwarded-Proto", "X-Request-Id"
+    };
+
+    private static final String DEFAULT_ALLOW = "User-Agent,Accept-Language,Referer,Origin,DNT,Sec-Ch-Ua*,Sec-Fetch-*,X-Forwarded-For,X-Forwarded-Proto,X-Real-Ip";
+    private static final String DEFAULT_DENY = "Cookie,Authorization,Accept-Encoding";
+
+    @Param({"5", "20", "50"})
+    public int headerCount;
+
+    // default: the application.properties scoring headers policy, all: forward every non hop-by-hop header
+    @Param({"default", "all"})
+    public String policy;
+
+    private DemoServerApiService demoServerApiService;
+
+    @Setup
+    public void setUp() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/timestamp");
+        request.setRemoteAddr("10.1.2.3");
+        for (int i = 0; i < headerCount; i++) {
+            String name = i < BROWSER_HEADERS.length ? BROWSER_HEADERS[i] : "X-Custom-Header-" + i;
+            request.addHeader(name, "value-" + i + "-abcdefghijklmnopqrstuvwxyz");
+        }
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        HeaderForwardingPolicy headerForwardingPolicy = policy.equals("all")
+                ? new HeaderForwardingPolicy("*", "", "")
+                : new HeaderForwardingPolicy(DEFAULT_ALLOW, DEFAULT_DENY, "");
+        demoServerApiService = new DemoServerApiService(null, new ClientIdService(new InMemoryApiClientRepository()), headerForwardingPolicy);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public HttpHeaders getRequestHeaders() {
+        return demoServerApiService.getRequestHeaders();
+    }
+}
@@ -0,0 +1,58 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.model.TotpBatchItem;
+import com.apidynamics.test.client_demo.model.TotpBatchResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk TOTP validation throughput per worker count, one operation is a whole batch
+ * (items / s = batchSize x ops / s). Run with a single JMH thread, the batch service brings its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TOTPBatchBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"10000"})
+    public int batchSize;
+
+    private TOTPBatchService service;
+    private List<TotpBatchItem> items;
+
+    @Setup
+    public void setUp() {
+        service = new TOTPBatchService(parallelism, 256, batchSize, 1, new TOTPReplayStore(false, 1, 1));
+        TOTPEngine engine = new TOTPEngine();
+        Random random = new Random(42);
+        long step = TOTPEngine.currentStep();
+        items = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            // 1000 distinct 20 bytes keys, every item is a valid OTP of the current step
+            byte[] key = new byte[20];
+            random.setSeed(i % 1000);
+            random.nextBytes(key);
+            String hexKey = HexFormat.of().formatHex(key);
+            items.add(new TotpBatchItem(hexKey, engine.generateString(engine.hexKey(hexKey), step), step));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.destroy();
+    }
+
+    @Benchmark
+    public void validateBatch(Blackhole blackhole) {
+        service.process(items, (TotpBatchResult result) -> blackhole.consume(result));
+    }
+}
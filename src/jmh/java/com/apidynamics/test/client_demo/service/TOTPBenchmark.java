@@ -0,0 +1,47 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TOTP generation / validation throughput and allocation per key length.
+ * Thread count comes from the jmh gradle extension (-PjmhThreads=N).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TOTPBenchmark {
+
+    @Param({"20", "64", "96"})
+    public int keyLength;
+
+    private String hexKey;
+    private String otp;
+
+    @Setup
+    public void setUp() {
+        byte[] key = new byte[keyLength];
+        new Random(keyLength).nextBytes(key);
+        hexKey = HexFormat.of().formatHex(key);
+        otp = TOTPService.getOTP(hexKey);
+    }
+
+    @Benchmark
+    public String getOTP() {
+        return TOTPService.getOTP(hexKey);
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return TOTPService.validate(hexKey, otp);
+    }
+
+    @Benchmark
+    public boolean validateWrongOtp() {
+        // worst case, both current and previous step are computed
+        return TOTPService.validate(hexKey, "------");
+    }
+}
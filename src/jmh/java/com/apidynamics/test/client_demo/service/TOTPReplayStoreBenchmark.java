@@ -0,0 +1,36 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replay store throughput: first uses (each op records a new OTP, the step moves on every 100k ops so buckets
+ * keep expiring) and replays of an already recorded OTP. Thread count comes from -PjmhThreads=N.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TOTPReplayStoreBenchmark {
+
+    private final AtomicLong sequence = new AtomicLong();
+    private TOTPReplayStore store;
+
+    @Setup
+    public void setUp() {
+        store = new TOTPReplayStore(true, 1_000_000, 1, () -> sequence.get() / 100_000);
+        store.markUsed("client-replayed", 0, "123456");
+    }
+
+    @Benchmark
+    public TOTPReplayStore.Result firstUse() {
+        long n = sequence.getAndIncrement();
+        return store.markUsed("client-" + (n & 1023), n / 100_000, Long.toString(100_000 + n % 100_000));
+    }
+
+    @Benchmark
+    public TOTPReplayStore.Result replay() {
+        return store.markUsed("client-replayed", 0, "123456");
+    }
+}
@@ -2,10 +2,12 @@ package com.apidynamics.test.client_demo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 import java.security.Security;
 
 @SpringBootApplication
+@ImportRuntimeHints(ClientDemoRuntimeHints.class)
 public class ClientDemoApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,37 @@
+package com.apidynamics.test.client_demo;
+
+import com.apidynamics.test.client_demo.entity.ApiClient;
+import com.apidynamics.test.client_demo.model.TimestampApiResponse;
+import com.apidynamics.test.client_demo.model.ValidationResult;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+/**
+ * GraalVM native image hints for what Spring AOT cannot infer from the bean definitions:
+ * <ul>
+ *     <li>the Lombok generated accessors and builder of {@link ApiClient}, read by Thymeleaf (clientId.publicKey)</li>
+ *     <li>the Thymeleaf templates, loaded by name at render time</li>
+ *     <li>JSON API bodies returned inside a CompletableFuture, not seen by the controller return type hints</li>
+ *     <li>the SunJCE HmacSHA1 implementation, instantiated by name through {@link javax.crypto.Mac#getInstance(String)}</li>
+ * </ul>
+ * The httpbin Map body needs none, its type is built explicitly (see DemoServerClient.MAP_BODY).
+ */
+public class ClientDemoRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.reflection().registerType(ApiClient.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                MemberCategory.INVOKE_PUBLIC_METHODS, MemberCategory.DECLARED_FIELDS);
+        hints.reflection().registerType(ApiClient.ApiClientBuilder.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        hints.resources().registerPattern("templates/*.html");
+
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), TimestampApiResponse.class, ValidationResult.class);
+
+        hints.reflection().registerType(TypeReference.of("com.sun.crypto.provider.SunJCE"), MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        hints.reflection().registerType(TypeReference.of("com.sun.crypto.provider.HmacCore$HmacSHA1"), MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+}
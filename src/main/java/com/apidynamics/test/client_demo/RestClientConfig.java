@@ -1,17 +1,39 @@
 package com.apidynamics.test.client_demo;
 
+import com.apidynamics.test.client_demo.service.UpstreamHeadDeadline;
+import com.apidynamics.test.client_demo.service.UpstreamRequestTimeout;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.DefaultResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
 public class RestClientConfig {
@@ -19,12 +41,41 @@ public class RestClientConfig {
     @Value("${DEMO_SERVER_BASE_URL:http://localhost:8080}")
     private String demoServerBaseURL;
 
+    // blocking client: simple (HttpURLConnection), pooled (Apache httpclient5 connection pool) or jdk (java.net.http, HTTP/2 capable)
+    // the async API goes through the same client: natively non-blocking for jdk, one virtual thread per call otherwise
+    @Value("${DEMO_SERVER_HTTP_CLIENT:pooled}")
+    private String demoServerHttpClient;
+
+    @Value("${DEMO_SERVER_HTTP_MAX_CONNECTIONS:200}")
+    private int maxConnections;
+
+    @Value("${DEMO_SERVER_HTTP_MAX_CONNECTIONS_PER_ROUTE:50}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${DEMO_SERVER_HTTP_CONNECT_TIMEOUT_MS:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${DEMO_SERVER_HTTP_RESPONSE_TIMEOUT_MS:10000}")
+    private long responseTimeoutMs;
+
+    @Value("${DEMO_SERVER_HTTP_KEEP_ALIVE_MS:30000}")
+    private long keepAliveMs;
+
+    @Value("${DEMO_SERVER_HTTP_IDLE_EVICTION_MS:60000}")
+    private long idleEvictionMs;
+
+    @Value("${DEMO_SERVER_HTTP2:false}")
+    private boolean http2;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     private static final Logger LOG = LoggerFactory.getLogger(RestClientConfig.class);
 
     @Bean(name = "demoServerRestTemplate")
-    public RestTemplate demoServerRestTemplate() {
+    public RestTemplate demoServerRestTemplate(ClientHttpRequestFactory demoServerRequestFactory) {
         LOG.info("Creating demoServerRestTemplate with base URL : {}", demoServerBaseURL);
-        RestTemplate restClient = new RestTemplate(new BufferingClientHttpRequestFactory(new SimpleClientHttpRequestFactory()));
+        RestTemplate restClient = new RestTemplate(new BufferingClientHttpRequestFactory(demoServerRequestFactory));
         restClient.setErrorHandler(new DefaultResponseErrorHandler() {
             @Override
             public void handleError(ClientHttpResponse response) throws IOException {}
@@ -32,4 +83,122 @@ public class RestClientConfig {
 
         return restClient;
     }
+
+    /**
+     * Same client without the buffering wrapper, response bodies are read from the connection as they arrive
+     * (streaming passthrough, see UpstreamPassthrough)
+     */
+    @Bean(name = "demoServerStreamingRestTemplate")
+    public RestTemplate demoServerStreamingRestTemplate(ClientHttpRequestFactory demoServerRequestFactory) {
+        RestTemplate restClient = new RestTemplate(demoServerRequestFactory);
+        restClient.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public void handleError(ClientHttpResponse response) throws IOException {}
+        });
+
+        return restClient;
+    }
+
+    /**
+     * Connection pool shared by all demo server calls, so the timestamp / TOTP / validation
+     * calls of a challenge reuse kept-alive connections instead of paying connection and TLS setup
+     */
+    @Bean(name = "demoServerConnectionManager")
+    @ConditionalOnProperty(name = "DEMO_SERVER_HTTP_CLIENT", havingValue = "pooled", matchIfMissing = true)
+    public PoolingHttpClientConnectionManager demoServerConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean(name = "demoServerRequestFactory")
+    public ClientHttpRequestFactory demoServerRequestFactory(ObjectProvider<PoolingHttpClientConnectionManager> demoServerConnectionManager) {
+        LOG.info("Creating demoServerRequestFactory of type : {}", demoServerHttpClient);
+        return switch (demoServerHttpClient) {
+            case "simple" -> {
+                SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+                requestFactory.setConnectTimeout(Duration.ofMillis(connectTimeoutMs));
+                requestFactory.setReadTimeout(Duration.ofMillis(responseTimeoutMs));
+                yield requestFactory;
+            }
+            case "jdk" -> {
+                JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(newJdkHttpClient());
+                requestFactory.setReadTimeout(Duration.ofMillis(responseTimeoutMs));
+                yield requestFactory;
+            }
+            case "pooled" -> {
+                if (http2) {
+                    LOG.warn("DEMO_SERVER_HTTP2 is only supported by the jdk client, pooled client stays on HTTP/1.1");
+                }
+                TimeValue keepAlive = TimeValue.ofMilliseconds(keepAliveMs);
+                RequestConfig requestConfig = RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .build();
+                CloseableHttpClient httpClient = HttpClients.custom()
+                        .setConnectionManager(demoServerConnectionManager.getObject())
+                        .setDefaultRequestConfig(requestConfig)
+                        .setKeepAliveStrategy((response, context) -> keepAlive)
+                        .evictExpiredConnections()
+                        .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictionMs))
+                        .build();
+                HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient) {
+                    // response head deadline of the streamed call running on this thread, see DemoServerClient.stream
+                    @Override
+                    protected void postProcessHttpRequest(ClassicHttpRequest request) {
+                        if (request instanceof HttpUriRequestBase cancellable) {
+                            UpstreamHeadDeadline.requestCreated(cancellable::cancel);
+                        }
+                    }
+                };
+                // adaptive response timeout of the blocking call running on this thread, see UpstreamResilience
+                requestFactory.setHttpContextFactory((method, uri) -> {
+                    Duration timeout = UpstreamRequestTimeout.current();
+                    if (timeout == null) {
+                        return null;
+                    }
+                    HttpClientContext context = HttpClientContext.create();
+                    context.setRequestConfig(RequestConfig.copy(requestConfig).setResponseTimeout(Timeout.of(timeout)).build());
+                    return context;
+                });
+                yield requestFactory;
+            }
+            default -> throw new IllegalArgumentException("Unknown DEMO_SERVER_HTTP_CLIENT : " + demoServerHttpClient);
+        };
+    }
+
+    /**
+     * Non-blocking client used by the async demo server API with the jdk client, responses complete on its executor
+     */
+    @Bean(name = "demoServerAsyncHttpClient")
+    @ConditionalOnProperty(name = "DEMO_SERVER_HTTP_CLIENT", havingValue = "jdk")
+    public HttpClient demoServerAsyncHttpClient() {
+        return newJdkHttpClient();
+    }
+
+    /**
+     * Runs the async demo server API calls on the blocking clients (simple, pooled), one virtual thread per call,
+     * so async calls share the connection pool, its settings and /stats/http-pool with the blocking ones
+     */
+    @Bean(name = "demoServerAsyncExecutor", destroyMethod = "close")
+    public ExecutorService demoServerAsyncExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("demo-server-async-", 0).factory());
+    }
+
+    private HttpClient newJdkHttpClient() {
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs));
+        if (virtualThreads) {
+            // async response handling of the jdk client otherwise runs on a cached platform thread pool
+            httpClientBuilder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        return httpClientBuilder.build();
+    }
 }
@@ -0,0 +1,122 @@
+package com.apidynamics.test.client_demo.controller;
+
+import com.apidynamics.test.client_demo.model.ClientCredential;
+import com.apidynamics.test.client_demo.model.TimestampApiResponse;
+import com.apidynamics.test.client_demo.service.AdaptiveAuthChallengeService;
+import com.apidynamics.test.client_demo.service.ChallengeResult;
+import com.apidynamics.test.client_demo.service.ClientIdService;
+import com.apidynamics.test.client_demo.service.ClientRegistry;
+import com.apidynamics.test.client_demo.service.DemoServerApiService;
+import com.apidynamics.test.client_demo.service.UnknownClientException;
+import com.apidynamics.test.client_demo.service.UpstreamUnavailableException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.util.Pair;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Headless JSON API for machine clients, same flows as the /timestamp and /httpbin pages without view rendering.
+ * The upstream status is passed through, challenge resolution happens in-process exactly as for the pages.
+ */
+@RestController
+@RequestMapping("/api")
+public class ClientDemoApiController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClientDemoApiController.class);
+
+    private final DemoServerApiService demoServerApiService;
+    private final AdaptiveAuthChallengeService adaptiveAuthChallengeService;
+    private final ClientIdService clientIdService;
+    private final ClientRegistry clientRegistry;
+
+    @Autowired
+    public ClientDemoApiController(DemoServerApiService demoServerApiService, AdaptiveAuthChallengeService adaptiveAuthChallengeService,
+                                   ClientIdService clientIdService, ClientRegistry clientRegistry) {
+        this.demoServerApiService = demoServerApiService;
+        this.adaptiveAuthChallengeService = adaptiveAuthChallengeService;
+        this.clientIdService = clientIdService;
+        this.clientRegistry = clientRegistry;
+    }
+
+    /**
+     * JSON variant of the /timestamp page, clients are selected the same way
+     * @param tokenType - Token generation strategy (self, server)
+     * @param pathClient - selected client, /api/clients/{client}/timestamp
+     * @param headerClient - selected client, CLIENT_SELECTOR_HEADER header
+     * @return - timestamp or error with the upstream status, once the challenge flow completes
+     */
+    @GetMapping({"/timestamp", "/clients/{client}/timestamp"})
+    public CompletableFuture<ResponseEntity<TimestampApiResponse>> timestamp(@RequestParam(value = "token_type", defaultValue = "self") String tokenType,
+                                                                             @PathVariable(value = "client", required = false) String pathClient,
+                                                                             @RequestHeader(value = "${CLIENT_SELECTOR_HEADER:X-Client}", required = false) String headerClient) {
+        String clientRef = pathClient != null ? pathClient : headerClient;
+        ClientCredential client = clientRef != null ? clientRegistry.get(clientRef) : clientIdService.getClient();
+        return adaptiveAuthChallengeService.getTimestampAsync(tokenType, client).thenApply(result -> {
+            LOG.debug("Timestamp API call {} : {}", result.outcome(), result.status());
+            boolean success = result.outcome() == ChallengeResult.Outcome.SUCCESS;
+            TimestampApiResponse body = new TimestampApiResponse(success ? result.response().timestamp() : null, result.outcome().name(),
+                    result.challenges(), result.error(), success ? null : result.response().validationResult());
+            return ResponseEntity.status(result.status()).body(body);
+        });
+    }
+
+    /**
+     * JSON variant of the /httpbin page
+     * @param test - which endpoint of httpbin you want to hit?
+     * @return - httpbin response with its status
+     */
+    @GetMapping("/httpbin")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> httpbin(@RequestParam(value = "test", defaultValue = "headers") String test) {
+        return demoServerApiService.httpBinAsync(test)
+                .thenApply(result -> ResponseEntity.status(result.getFirst()).body(result.getSecond()));
+    }
+
+    /**
+     * Streaming variant of /api/httpbin, the httpbin response is relayed as is while it is read, not parsed
+     * @param test - which endpoint of httpbin you want to hit?
+     * @param response - receives the httpbin status, passthrough headers and body
+     */
+    @GetMapping("/httpbin/stream")
+    public void httpbinStream(@RequestParam(value = "test", defaultValue = "headers") String test, HttpServletResponse response) {
+        Pair<HttpStatusCode, Long> result = demoServerApiService.httpBinStream(test, response);
+        LOG.debug("httpbin.org stream status : {}, {} bytes", result.getFirst(), result.getSecond());
+    }
+
+    @ExceptionHandler(UnknownClientException.class)
+    public ResponseEntity<Map<String, Object>> unknownClient(UnknownClientException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error("Unknown client", e.getMessage()));
+    }
+
+    /**
+     * An open circuit fails the call fast, Retry-After tells when the circuit lets a probe through
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> upstreamUnavailable(UpstreamUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (e.getRetryAfterMillis() + 999) / 1000)))
+                .body(error("Adaptive authentication server unavailable", e.getMessage()));
+    }
+
+    private static Map<String, Object> error(String error, String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", error);
+        body.put("message", message);
+        return body;
+    }
+}
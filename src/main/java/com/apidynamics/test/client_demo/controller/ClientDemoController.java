@@ -1,23 +1,37 @@
 package com.apidynamics.test.client_demo.controller;
 
 import com.apidynamics.test.client_demo.entity.ApiClient;
+import com.apidynamics.test.client_demo.model.ClientCredential;
+import com.apidynamics.test.client_demo.model.TimestampResponse;
 import com.apidynamics.test.client_demo.repository.ApiClientRepository;
-import com.apidynamics.test.client_demo.service.TOTPService;
+import com.apidynamics.test.client_demo.service.AdaptiveAuthChallengeService;
+import com.apidynamics.test.client_demo.service.ChallengeResult;
+import com.apidynamics.test.client_demo.service.ClientIdService;
+import com.apidynamics.test.client_demo.service.ClientRegistry;
 import com.apidynamics.test.client_demo.service.DemoServerApiService;
+import com.apidynamics.test.client_demo.service.UnknownClientException;
+import com.apidynamics.test.client_demo.service.UpstreamUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.util.Pair;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.ModelAndView;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 public class ClientDemoController {
@@ -28,14 +42,19 @@ public class ClientDemoController {
     private String appName;
 
     private final DemoServerApiService demoServerApiService;
-    private final TOTPService totpService;
+    private final AdaptiveAuthChallengeService adaptiveAuthChallengeService;
     private final ApiClientRepository apiClientRepository;
+    private final ClientIdService clientIdService;
+    private final ClientRegistry clientRegistry;
 
     @Autowired
-    public ClientDemoController(DemoServerApiService demoServerApiService, TOTPService totpService, ApiClientRepository apiClientRepository) {
+    public ClientDemoController(DemoServerApiService demoServerApiService, AdaptiveAuthChallengeService adaptiveAuthChallengeService, ApiClientRepository apiClientRepository,
+                                ClientIdService clientIdService, ClientRegistry clientRegistry) {
         this.demoServerApiService = demoServerApiService;
-        this.totpService = totpService;
+        this.adaptiveAuthChallengeService = adaptiveAuthChallengeService;
         this.apiClientRepository = apiClientRepository;
+        this.clientIdService = clientIdService;
+        this.clientRegistry = clientRegistry;
     }
 
     @RequestMapping("/")
@@ -48,104 +67,90 @@ public class ClientDemoController {
 
     @PostMapping("/settings")
     public String save(@RequestParam(value = "client_id", defaultValue = "Unknown") String clientId) {
-        apiClientRepository.save(ApiClient.builder().id(1).publicKey(clientId).build());
+        clientIdService.saveClientId(clientId);
+        clientRegistry.reload();
         return "redirect:/";
     }
 
     /**
-     * Generates or Gets a TOTP token
-     * Depending on the ApiClient token generation strategy
-     * @param transactionId - Current Adaptive Auth Transaction Id
-     * @param tokenType - Token generation strategy (self, server)
-     * @return - A OTP token
+     * Reloads the client registry from the repository and CLIENT_REGISTRY_FILE, requests keep being served meanwhile
+     * @return - registry stats after the reload
      */
-    private Pair<HttpStatusCode, Map<String, Object>> resolveTotpChallenge(String transactionId, String tokenType) {
-        String totp;
-        if (tokenType.equalsIgnoreCase("self")) {
-            // gen top token flow
-            totp = totpService.generateTOTP();
-        } else {
-            // get otp from server
-            Pair<HttpStatusCode, Map<String, Object>> totpFromServerResult = totpService.getTotpToken(transactionId);
-            HttpStatusCode totpStatusCode = totpFromServerResult.getFirst();
-            Map<String, Object> totpResponseBody = totpFromServerResult.getSecond();
-
-            LOG.info("Server TOTP generation call status : {}", totpStatusCode);
-            LOG.debug("Server TOTP generation call response : {}", totpResponseBody);
-
-            // if server TOTP generation call results in error, then return the error
-            if (totpStatusCode.isError()) {
-                return totpFromServerResult;
-            }
-
-            // if server TOTP token was returned successfully, then use it to validate it
-            totp = totpFromServerResult.getSecond().get("totp").toString();
-        }
-
-        Pair<HttpStatusCode, Map<String, Object>> totpValidationResult = demoServerApiService.validateClientTotp(transactionId, totp);
-        HttpStatusCode totpValidationStatusCode = totpValidationResult.getFirst();
-        Map<String, Object> totpValidationResponseBody = totpValidationResult.getSecond();
-
-        LOG.info("TOTP validation call status : {}", totpValidationStatusCode);
-        LOG.debug("TOTP validation call response : {}", totpValidationResponseBody);
-
-        return totpValidationResult;
+    @PostMapping("/clients/reload")
+    @ResponseBody
+    public Map<String, Object> reloadClients() {
+        clientRegistry.reload();
+        return clientRegistry.getStats();
     }
 
-    @RequestMapping("/timestamp")
-    public String timestampPage(Model model, @RequestParam(value = "token_type", defaultValue = "self") String tokenType) {
-        LOG.info("Got to /timestamp");
-        Pair<HttpStatusCode, Map<String, Object>> result = demoServerApiService.getTimestamp();
-        HttpStatusCode httpStatusCode = result.getFirst();
-        Map<String, Object> responseBody = result.getSecond();
-
-        LOG.info("Timestamp call status : {}", httpStatusCode);
-        LOG.debug("Timestamp call response : {}", responseBody);
-
-        if (httpStatusCode.is2xxSuccessful()) {
-            model.addAllAttributes(responseBody);
-            return "timestamp";
-        }
-
-        // this scenario is when adaptive client needs to resolve a TOTP challenge
-        if (httpStatusCode.isSameCodeAs(HttpStatusCode.valueOf(401))) {
-            String tid = (String) responseBody.get("transaction_id");
-            Pair<HttpStatusCode, Map<String, Object>> totpValidationResult = resolveTotpChallenge(tid, tokenType);
-            HttpStatusCode totpValidationStatusCode = totpValidationResult.getFirst();
-            Map<String, Object> totpValidationResponseBody = totpValidationResult.getSecond();
-            if (totpValidationStatusCode.is2xxSuccessful()) {
-                return "redirect:/timestamp";
-            } else {
-                model.addAttribute("status", totpValidationStatusCode);
-                model.addAttribute("error", totpValidationResponseBody);
-                return "error";
+    /**
+     * Gets the timestamp from demo server, TOTP challenges are resolved and the call retried in-process.
+     * The call is made for the client selected by path or by the CLIENT_SELECTOR_HEADER header (public key or id),
+     * the default client otherwise
+     * @param tokenType - Token generation strategy (self, server)
+     * @param pathClient - selected client, /clients/{client}/timestamp
+     * @param headerClient - selected client, CLIENT_SELECTOR_HEADER header
+     * @return - view name, once the challenge flow completes
+     */
+    @RequestMapping({"/timestamp", "/clients/{client}/timestamp"})
+    public CompletableFuture<String> timestampPage(Model model, @RequestParam(value = "token_type", defaultValue = "self") String tokenType,
+                                                   @PathVariable(value = "client", required = false) String pathClient,
+                                                   @RequestHeader(value = "${CLIENT_SELECTOR_HEADER:X-Client}", required = false) String headerClient) {
+        LOG.debug("Got to /timestamp");
+        String clientRef = pathClient != null ? pathClient : headerClient;
+        ClientCredential client = clientRef != null ? clientRegistry.get(clientRef) : clientIdService.getClient();
+        return adaptiveAuthChallengeService.getTimestampAsync(tokenType, client).thenApply(result -> {
+            HttpStatusCode httpStatusCode = result.status();
+            TimestampResponse response = result.response();
+
+            LOG.debug("Timestamp call status : {}", httpStatusCode);
+            LOG.debug("Timestamp call response : {}", response.rawBody());
+
+            if (result.outcome() == ChallengeResult.Outcome.SUCCESS) {
+                model.addAttribute("timestamp", response.timestamp());
+                return "timestamp";
             }
-        }
-
-        // get error from response and return failed API call
-        Map<String, Object> adaptiveAuthValidationResult = (Map<String, Object>) responseBody.get("validation_result");
-        model.addAttribute("status", httpStatusCode);
-        if (adaptiveAuthValidationResult != null) {
-            String error = String.format("Adaptive Authentication Result. score=%s, decision=%s", adaptiveAuthValidationResult.get("score"), adaptiveAuthValidationResult.get("decision"));
-            model.addAttribute("error", error);
-        } else {
-            model.addAttribute("error", responseBody);
-        }
-        return "error";
+            model.addAttribute("status", httpStatusCode);
+            model.addAttribute("error", result.error());
+            return "error";
+        });
     }
 
     @RequestMapping("/httpbin")
     public String httpbinPage(Model model, @RequestParam(value = "test", defaultValue = "headers") String test) {
-        LOG.info("Got to /httpbin");
+        LOG.debug("Got to /httpbin");
         Pair<HttpStatusCode, Map<String, Object>> result = demoServerApiService.httpBin(test);
         HttpStatusCode httpStatusCode = result.getFirst();
         Map<String, Object> responseBody = result.getSecond();
 
-        LOG.info("httpbin.org call status : {}", httpStatusCode);
+        LOG.debug("httpbin.org call status : {}", httpStatusCode);
         LOG.debug("httpbin.org call response : {}", responseBody);
 
         model.addAttribute("response", responseBody);
         return "httpbin";
     }
 
+    @ExceptionHandler(UnknownClientException.class)
+    public ModelAndView unknownClient(UnknownClientException e) {
+        LOG.debug("Unknown client : {}", e.getClientRef());
+        ModelAndView modelAndView = new ModelAndView("error", HttpStatus.NOT_FOUND);
+        modelAndView.addObject("status", HttpStatus.NOT_FOUND);
+        modelAndView.addObject("error", "Unknown client");
+        modelAndView.addObject("message", e.getMessage());
+        return modelAndView;
+    }
+
+    /**
+     * An open circuit fails the page fast instead of waiting for a failing adaptive auth server
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ModelAndView upstreamUnavailable(UpstreamUnavailableException e) {
+        LOG.debug("Upstream unavailable : {}", e.getMessage());
+        ModelAndView modelAndView = new ModelAndView("error", HttpStatus.SERVICE_UNAVAILABLE);
+        modelAndView.addObject("status", HttpStatus.SERVICE_UNAVAILABLE);
+        modelAndView.addObject("error", "Adaptive authentication server unavailable");
+        modelAndView.addObject("message", e.getMessage());
+        return modelAndView;
+    }
+
 }
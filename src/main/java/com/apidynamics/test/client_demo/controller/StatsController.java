@@ -0,0 +1,157 @@
+package com.apidynamics.test.client_demo.controller;
+
+import com.apidynamics.test.client_demo.filter.ConcurrencyLimiter;
+import com.apidynamics.test.client_demo.journal.RequestJournal;
+import com.apidynamics.test.client_demo.service.ClientIdService;
+import com.apidynamics.test.client_demo.service.ClientRegistry;
+import com.apidynamics.test.client_demo.service.TOTPReplayStore;
+import com.apidynamics.test.client_demo.service.TimestampBatchService;
+import com.apidynamics.test.client_demo.service.UpstreamCallCoalescer;
+import com.apidynamics.test.client_demo.service.UpstreamPassthrough;
+import com.apidynamics.test.client_demo.service.UpstreamResilience;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runtime statistics of the demo client internals, as JSON
+ */
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+
+    private final ObjectProvider<PoolingHttpClientConnectionManager> demoServerConnectionManager;
+    private final ClientIdService clientIdService;
+    private final UpstreamCallCoalescer upstreamCallCoalescer;
+    private final RequestJournal requestJournal;
+    private final UpstreamResilience upstreamResilience;
+    private final ClientRegistry clientRegistry;
+    private final TOTPReplayStore totpReplayStore;
+    private final UpstreamPassthrough upstreamPassthrough;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final TimestampBatchService timestampBatchService;
+
+    @Autowired
+    public StatsController(ObjectProvider<PoolingHttpClientConnectionManager> demoServerConnectionManager, ClientIdService clientIdService,
+                           UpstreamCallCoalescer upstreamCallCoalescer, RequestJournal requestJournal, UpstreamResilience upstreamResilience,
+                           ClientRegistry clientRegistry, TOTPReplayStore totpReplayStore, UpstreamPassthrough upstreamPassthrough,
+                           ConcurrencyLimiter concurrencyLimiter, TimestampBatchService timestampBatchService) {
+        this.demoServerConnectionManager = demoServerConnectionManager;
+        this.clientIdService = clientIdService;
+        this.upstreamCallCoalescer = upstreamCallCoalescer;
+        this.requestJournal = requestJournal;
+        this.upstreamResilience = upstreamResilience;
+        this.clientRegistry = clientRegistry;
+        this.totpReplayStore = totpReplayStore;
+        this.upstreamPassthrough = upstreamPassthrough;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.timestampBatchService = timestampBatchService;
+    }
+
+    /**
+     * @return - demo server connection pool usage, empty when the pooled client is not selected
+     */
+    @GetMapping("/http-pool")
+    public Map<String, Object> httpPool() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        PoolingHttpClientConnectionManager connectionManager = demoServerConnectionManager.getIfAvailable();
+        if (connectionManager != null) {
+            PoolStats totalStats = connectionManager.getTotalStats();
+            stats.put("leased", totalStats.getLeased());
+            stats.put("available", totalStats.getAvailable());
+            stats.put("pending", totalStats.getPending());
+            stats.put("max", totalStats.getMax());
+            stats.put("routes", connectionManager.getRoutes().size());
+        }
+        return stats;
+    }
+
+    /**
+     * @return - client id near-cache hits and misses (misses are repository reads)
+     */
+    @GetMapping("/client-id-cache")
+    public Map<String, Object> clientIdCache() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", clientIdService.getCacheHits());
+        stats.put("misses", clientIdService.getCacheMisses());
+        return stats;
+    }
+
+    /**
+     * @return - executed and coalesced upstream calls per scope and endpoint
+     */
+    @GetMapping("/coalescing")
+    public Map<String, Object> coalescing() {
+        return upstreamCallCoalescer.getStats();
+    }
+
+    /**
+     * @return - request journal counters, dropped events are the ones the writer could not keep up with
+     */
+    @GetMapping("/journal")
+    public Map<String, Object> journal() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recorded", requestJournal.getRecorded());
+        stats.put("sampledOut", requestJournal.getSampledOut());
+        stats.put("dropped", requestJournal.getDropped());
+        stats.put("written", requestJournal.getWritten());
+        stats.put("pending", requestJournal.getPending());
+        stats.put("capacity", requestJournal.getCapacity());
+        return stats;
+    }
+
+    /**
+     * @return - circuit state, adaptive timeout, latency percentiles and hedge win rate per upstream endpoint
+     */
+    @GetMapping("/resilience")
+    public Map<String, Object> resilience() {
+        return upstreamResilience.getStats();
+    }
+
+    /**
+     * @return - registered clients, estimated registry footprint, reloads and lookups
+     */
+    @GetMapping("/client-registry")
+    public Map<String, Object> clientRegistry() {
+        return clientRegistry.getStats();
+    }
+
+    /**
+     * @return - used TOTPs recorded, replays rejected, live entries and memory ceiling of the replay store
+     */
+    @GetMapping("/totp-replay")
+    public Map<String, Object> totpReplay() {
+        return totpReplayStore.getStats();
+    }
+
+    /**
+     * @return - responses and bytes relayed by the streaming passthrough, copy buffers allocated and pooled
+     */
+    @GetMapping("/passthrough")
+    public Map<String, Object> passthrough() {
+        return upstreamPassthrough.getStats();
+    }
+
+    /**
+     * @return - adaptive concurrency limit, in-flight, accepted and rejected requests and latency averages per route
+     */
+    @GetMapping("/concurrency-limit")
+    public Map<String, Object> concurrencyLimit() {
+        return concurrencyLimiter.getStats();
+    }
+
+    /**
+     * @return - multi-client timestamp batches and flows run, flow outcomes and settings
+     */
+    @GetMapping("/timestamp-batch")
+    public Map<String, Object> timestampBatch() {
+        return timestampBatchService.getStats();
+    }
+}
@@ -0,0 +1,88 @@
+package com.apidynamics.test.client_demo.controller;
+
+import com.apidynamics.test.client_demo.model.TotpBatchItem;
+import com.apidynamics.test.client_demo.model.TotpBatchResult;
+import com.apidynamics.test.client_demo.service.TOTPBatchService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Bulk TOTP API for batch jobs: POST a JSON array of {"key", "otp", "step"} items (HEX keys, otp to validate,
+ * no otp to generate one), results are streamed back as newline delimited JSON, in item order
+ */
+@RestController
+@RequestMapping("/totp")
+public class TOTPBatchController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final TOTPBatchService totpBatchService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public TOTPBatchController(TOTPBatchService totpBatchService, ObjectMapper objectMapper) {
+        this.totpBatchService = totpBatchService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> batch(HttpServletRequest request) throws IOException {
+        List<TotpBatchItem> items;
+        try (JsonParser parser = objectMapper.createParser(request.getInputStream())) {
+            items = TotpBatchItem.readAll(parser, totpBatchService.getMaxItems());
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getOriginalMessage());
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                // one object per line, no separator between root values
+                generator.setRootValueSeparator(null);
+                try {
+                    totpBatchService.process(items, result -> write(generator, result));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private static void write(JsonGenerator generator, TotpBatchResult result) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("index", result.index());
+            if (result.otp() != null) {
+                generator.writeStringField("otp", result.otp());
+            }
+            if (result.valid() != null) {
+                generator.writeBooleanField("valid", result.valid());
+            }
+            if (result.drift() != null) {
+                generator.writeNumberField("drift", result.drift());
+            }
+            if (result.error() != null) {
+                generator.writeStringField("error", result.error());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.apidynamics.test.client_demo.controller;
+
+import com.apidynamics.test.client_demo.model.TimestampBatchItem;
+import com.apidynamics.test.client_demo.model.TimestampBatchResult;
+import com.apidynamics.test.client_demo.service.TimestampBatchService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Multi-client timestamp API for synthetic monitoring: POST a JSON array of {"client", "token_type"} items
+ * (client public key or id, self or server strategy), the challenge flows of all items run concurrently and
+ * their results are streamed back as newline delimited JSON as they complete, followed by a {"summary"} line.
+ * The body is written on a virtual thread of its own, with an async request timeout outlasting the batch deadline.
+ */
+@RestController
+@RequestMapping("/api/timestamp")
+public class TimestampBatchController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    // after the batch deadline: interrupting and joining the flows it cut, writing the summary line
+    private static final long ASYNC_TIMEOUT_MARGIN_MS = 5000;
+    private static final String ASYNC_TIMEOUT_KEY = TimestampBatchController.class.getName() + ".asyncTimeout";
+
+    private final TimestampBatchService timestampBatchService;
+    private final ObjectMapper objectMapper;
+    // a body waits on its batch for up to the deadline, it would hold a thread of the shared MVC executor
+    private final SimpleAsyncTaskExecutor batchExecutor = new SimpleAsyncTaskExecutor("timestamp-batch-");
+
+    @Autowired
+    public TimestampBatchController(TimestampBatchService timestampBatchService, ObjectMapper objectMapper) {
+        this.timestampBatchService = timestampBatchService;
+        this.objectMapper = objectMapper;
+        this.batchExecutor.setVirtualThreads(true);
+    }
+
+    /**
+     * @param timeoutMs - batch deadline, TIMESTAMP_BATCH_TIMEOUT_MS when missing or longer
+     * @param request - JSON array of items
+     * @return - one result line per item, then the summary line
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> batch(@RequestParam(value = "timeout_ms", required = false) Long timeoutMs,
+                                                       HttpServletRequest request) throws IOException {
+        List<TimestampBatchItem> items;
+        try (JsonParser parser = objectMapper.createParser(request.getInputStream())) {
+            items = TimestampBatchItem.readAll(parser, timestampBatchService.getMaxItems());
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getOriginalMessage());
+        }
+        if (timeoutMs != null && timeoutMs < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "timeout_ms must be positive");
+        }
+        Duration deadline = timestampBatchService.deadline(timeoutMs != null ? Duration.ofMillis(timeoutMs) : null);
+        // on the request thread, the timestamp calls carry its forwarded headers
+        List<TimestampBatchService.Flow> flows = timestampBatchService.plan(items);
+        configureAsync(request, deadline.toMillis() + ASYNC_TIMEOUT_MARGIN_MS);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                // one object per line, no separator between root values
+                generator.setRootValueSeparator(null);
+                TimestampBatchService.Summary summary;
+                try {
+                    summary = timestampBatchService.run(flows, deadline, result -> write(generator, result));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Timestamp batch interrupted");
+                }
+                write(generator, summary);
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * Executor and async timeout of this request only, other async requests keep the MVC defaults
+     */
+    private void configureAsync(HttpServletRequest request, long asyncTimeoutMs) {
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.setTaskExecutor(batchExecutor);
+        // called with the async request before it starts, the timeout can only be set until then
+        asyncManager.registerCallableInterceptor(ASYNC_TIMEOUT_KEY, new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                if (webRequest instanceof AsyncWebRequest asyncWebRequest) {
+                    asyncWebRequest.setTimeout(asyncTimeoutMs);
+                }
+            }
+        });
+    }
+
+    private static void write(JsonGenerator generator, TimestampBatchResult result) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("index", result.index());
+            generator.writeStringField("client", result.client());
+            generator.writeStringField("token_type", result.tokenType());
+            generator.writeStringField("outcome", result.outcome());
+            if (result.status() != null) {
+                generator.writeNumberField("status", result.status());
+            }
+            if (result.timestamp() != null) {
+                generator.writeStringField("timestamp", result.timestamp());
+            }
+            if (result.challenges() != null) {
+                generator.writeNumberField("challenges", result.challenges());
+            }
+            if (result.error() != null) {
+                generator.writeStringField("error", result.error());
+            }
+            generator.writeNumberField("queued_ms", millis(result.queuedNanos()));
+            generator.writeNumberField("duration_ms", millis(result.durationNanos()));
+            if (!result.stageNanos().isEmpty()) {
+                generator.writeObjectFieldStart("stages_ms");
+                for (Map.Entry<String, Long> stage : result.stageNanos().entrySet()) {
+                    generator.writeNumberField(stage.getKey(), millis(stage.getValue()));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            // each result is sent as it completes
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(JsonGenerator generator, TimestampBatchService.Summary summary) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("summary");
+        generator.writeNumberField("items", summary.items());
+        generator.writeNumberField("succeeded", summary.succeeded());
+        generator.writeNumberField("failed", summary.failed());
+        generator.writeNumberField("deadline_exceeded", summary.deadlineExceeded());
+        generator.writeNumberField("duration_ms", millis(summary.durationNanos()));
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e5) / 10.0;
+    }
+}
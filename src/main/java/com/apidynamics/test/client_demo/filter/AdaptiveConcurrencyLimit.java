@@ -0,0 +1,152 @@
+package com.apidynamics.test.client_demo.filter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit of one route, adapted to latency with a gradient (Vegas-like) algorithm:
+ * while the short-term latency stays within tolerance x the long-term latency the limit grows by about sqrt(limit),
+ * as latency climbs (the adaptive-auth server slows down, requests queue) it shrinks by the latency ratio,
+ * down to half per update. The limit only grows while at least half of it is in use.
+ * Admission is a CAS on the in-flight count, the limit is updated by one completing request at a time,
+ * samples arriving during an update are skipped rather than waited for.
+ */
+public final class AdaptiveConcurrencyLimit {
+
+  // samples averaged by the short-term latency
+  private static final int SHORT_WINDOW = 10;
+
+  private final String route;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double tolerance;
+  private final double smoothing;
+  private final int longWindow;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicBoolean updating = new AtomicBoolean();
+  private volatile int limit;
+
+  // guarded by updating
+  private double estimatedLimit;
+  private double shortRttNanos;
+  private double longRttNanos;
+  private long samples;
+
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder skippedSamples = new LongAdder();
+
+  /**
+   * @param route - route name
+   * @param initialLimit - limit before any sample
+   * @param minLimit - limit floor
+   * @param maxLimit - limit ceiling
+   * @param tolerance - short / long latency ratio tolerated before the limit shrinks
+   * @param smoothing - weight of a new limit estimate, 0 to 1
+   * @param longWindow - samples averaged by the long-term latency
+   */
+  public AdaptiveConcurrencyLimit(String route, int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing, int longWindow) {
+    if (minLimit < 1 || maxLimit < minLimit || tolerance < 1 || smoothing <= 0 || smoothing > 1 || longWindow < SHORT_WINDOW) {
+      throw new IllegalArgumentException("Invalid concurrency limit settings for " + route);
+    }
+    this.route = route;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.tolerance = tolerance;
+    this.smoothing = smoothing;
+    this.longWindow = longWindow;
+    this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    this.limit = (int) estimatedLimit;
+  }
+
+  /**
+   * @return - true if the request may proceed, it must then be {@link #release released}
+   */
+  public boolean tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        rejected.increment();
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        accepted.increment();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * @param rttNanos - time the request held its slot
+   */
+  public void release(long rttNanos) {
+    int inFlightBefore = inFlight.getAndDecrement();
+    onSample(rttNanos, inFlightBefore);
+  }
+
+  void onSample(long rttNanos, int inFlightBefore) {
+    if (!updating.compareAndSet(false, true)) {
+      skippedSamples.increment();
+      return;
+    }
+    try {
+      samples++;
+      shortRttNanos = average(shortRttNanos, rttNanos, Math.min(samples, SHORT_WINDOW));
+      longRttNanos = average(longRttNanos, rttNanos, Math.min(samples, longWindow));
+      // after a sustained slowdown ends, let the long-term latency catch up with the recovered one
+      if (longRttNanos > 2 * shortRttNanos) {
+        longRttNanos *= 0.95;
+      }
+      // not using the limit, nothing learned about it
+      if (inFlightBefore < estimatedLimit / 2) {
+        return;
+      }
+      double gradient = shortRttNanos > 0 ? Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRttNanos)) : 1.0;
+      double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+      estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+      limit = (int) estimatedLimit;
+    } finally {
+      updating.set(false);
+    }
+  }
+
+  public String getRoute() {
+    return route;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  /**
+   * @return - current limit, in-flight requests, accepted and rejected requests, latency averages
+   */
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("limit", limit);
+    stats.put("inFlight", inFlight.get());
+    stats.put("accepted", accepted.sum());
+    stats.put("rejected", rejected.sum());
+    stats.put("skippedSamples", skippedSamples.sum());
+    // racy reads of the update state, fine for monitoring
+    stats.put("shortRttMs", shortRttNanos / 1_000_000);
+    stats.put("longRttMs", longRttNanos / 1_000_000);
+    return stats;
+  }
+
+  private static double average(double average, long sample, long window) {
+    return average + (sample - average) / window;
+  }
+}
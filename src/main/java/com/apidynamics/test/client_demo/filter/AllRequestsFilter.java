@@ -1,7 +1,9 @@
 package com.apidynamics.test.client_demo.filter;
 
+import com.apidynamics.test.client_demo.journal.RequestJournal;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.annotation.Order;
@@ -11,12 +13,18 @@ import java.io.IOException;
 
 @Component
 @Order(1)
-// This filter is for demonstration purpose only
-// It only log the start and end of a request transaction for all requests to the server
+// Records the start and end of every request transaction in the request journal.
+// Async requests (/timestamp) are recorded when the async processing completes.
 public class AllRequestsFilter implements Filter {
 
   private final static Logger LOG = LoggerFactory.getLogger(AllRequestsFilter.class);
 
+  private final RequestJournal requestJournal;
+
+  public AllRequestsFilter(RequestJournal requestJournal) {
+    this.requestJournal = requestJournal;
+  }
+
   @Override
   public void init(final FilterConfig filterConfig) throws ServletException {
     LOG.info("Initializing filter : {}", this);
@@ -26,12 +34,20 @@ public class AllRequestsFilter implements Filter {
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
 
     HttpServletRequest req = (HttpServletRequest) request;
-    String requestData = String.format("%s %s", req.getMethod(), req.getRequestURI());
-    LOG.info("Starting a demo client transaction for req : {}",  requestData);
+    HttpServletResponse res = (HttpServletResponse) response;
+    long start = System.nanoTime();
+    try {
+      chain.doFilter(request, response);
+    } catch (IOException | ServletException | RuntimeException e) {
+      requestJournal.request(req.getMethod(), req.getRequestURI(), HttpServletResponse.SC_INTERNAL_SERVER_ERROR, System.nanoTime() - start, e);
+      throw e;
+    }
 
-    chain.doFilter(request, response);
-
-    LOG.info("Committing a demo client transaction for req : {}", requestData);
+    if (req.isAsyncStarted()) {
+      req.getAsyncContext().addListener(new JournalAsyncListener(req, res, start));
+    } else {
+      requestJournal.request(req.getMethod(), req.getRequestURI(), res.getStatus(), System.nanoTime() - start, null);
+    }
   }
 
   @Override
@@ -39,4 +55,38 @@ public class AllRequestsFilter implements Filter {
     LOG.warn("Destructing filter : {}", this);
   }
 
+  private final class JournalAsyncListener implements AsyncListener {
+
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+    private final long start;
+    private Throwable error;
+
+    private JournalAsyncListener(HttpServletRequest request, HttpServletResponse response, long start) {
+      this.request = request;
+      this.response = response;
+      this.start = start;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      requestJournal.request(request.getMethod(), request.getRequestURI(), response.getStatus(), System.nanoTime() - start, error);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      error = event.getThrowable();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      error = event.getThrowable();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      event.getAsyncContext().addListener(this);
+    }
+  }
+
 }
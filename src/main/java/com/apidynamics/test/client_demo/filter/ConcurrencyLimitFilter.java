@@ -0,0 +1,96 @@
+package com.apidynamics.test.client_demo.filter;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+@Component
+@Order(2)
+// Sheds load before the adaptive-auth server saturates: a request over the concurrency limit of its route
+// is answered at once with a 503 and Retry-After, instead of waiting in Tomcat until everything times out.
+// Excess requests are not queued, a queued request would hold the thread and the upstream slot the limit protects.
+// The slot of an async request (/timestamp) is held until the async processing completes.
+// Runs after AllRequestsFilter, so rejected requests are journaled too.
+public class ConcurrencyLimitFilter implements Filter {
+
+  private static final byte[] REJECTED = "Server busy, retry later\n".getBytes(StandardCharsets.UTF_8);
+
+  private final ConcurrencyLimiter concurrencyLimiter;
+
+  public ConcurrencyLimitFilter(ConcurrencyLimiter concurrencyLimiter) {
+    this.concurrencyLimiter = concurrencyLimiter;
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+
+    HttpServletRequest req = (HttpServletRequest) request;
+    HttpServletResponse res = (HttpServletResponse) response;
+    // decoded path without ;parameters nor duplicate slashes, so that /timestamp;jsessionid=x or //timestamp are still /timestamp
+    AdaptiveConcurrencyLimit limit = concurrencyLimiter.route(UrlPathHelper.defaultInstance.getPathWithinApplication(req));
+    if (limit == null) {
+      chain.doFilter(request, response);
+      return;
+    }
+    if (!limit.tryAcquire()) {
+      res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      res.setHeader(HttpHeaders.RETRY_AFTER, "1");
+      res.setContentType(MediaType.TEXT_PLAIN_VALUE);
+      res.setContentLength(REJECTED.length);
+      res.getOutputStream().write(REJECTED);
+      return;
+    }
+
+    long start = System.nanoTime();
+    boolean async = false;
+    try {
+      chain.doFilter(request, response);
+      async = req.isAsyncStarted();
+      if (async) {
+        req.getAsyncContext().addListener(new ReleaseAsyncListener(limit, start));
+      }
+    } finally {
+      if (!async) {
+        limit.release(System.nanoTime() - start);
+      }
+    }
+  }
+
+  private static final class ReleaseAsyncListener implements AsyncListener {
+
+    private final AdaptiveConcurrencyLimit limit;
+    private final long start;
+
+    private ReleaseAsyncListener(AdaptiveConcurrencyLimit limit, long start) {
+      this.limit = limit;
+      this.start = start;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      limit.release(System.nanoTime() - start);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      event.getAsyncContext().addListener(this);
+    }
+  }
+
+}
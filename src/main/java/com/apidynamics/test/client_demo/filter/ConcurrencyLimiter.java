@@ -0,0 +1,108 @@
+package com.apidynamics.test.client_demo.filter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One {@link AdaptiveConcurrencyLimit} per route of CONCURRENCY_LIMIT_ROUTES, so a slow adaptive-auth server
+ * (/timestamp) does not take the /httpbin capacity down with it. A route is a path prefix, a request belongs to
+ * the longest one matching whole path segments, other requests (home page, stats, actuator) are never limited.
+ * Limits, in-flight requests and rejections are exported as adaptive.auth.concurrency.* meters tagged by route.
+ */
+@Component
+public class ConcurrencyLimiter {
+
+  private final boolean enabled;
+  // longest prefix first
+  private final AdaptiveConcurrencyLimit[] limits;
+
+  /**
+   * @param enabled - limiting on / off
+   * @param routes - comma separated route path prefixes
+   * @param initialLimit - limit of a route before any sample
+   * @param minLimit - limit floor
+   * @param maxLimit - limit ceiling
+   * @param tolerance - latency increase tolerated before limits shrink, as a short / long-term latency ratio
+   * @param smoothing - weight of each new limit estimate, 0 to 1
+   * @param longWindow - requests averaged by the long-term latency
+   */
+  @Autowired
+  public ConcurrencyLimiter(@Value("${CONCURRENCY_LIMIT_ENABLED:false}") boolean enabled,
+                            @Value("${CONCURRENCY_LIMIT_ROUTES:/timestamp,/api/timestamp,/clients,/api/clients,/httpbin,/api/httpbin}") String routes,
+                            @Value("${CONCURRENCY_LIMIT_INITIAL:50}") int initialLimit,
+                            @Value("${CONCURRENCY_LIMIT_MIN:8}") int minLimit,
+                            @Value("${CONCURRENCY_LIMIT_MAX:1000}") int maxLimit,
+                            @Value("${CONCURRENCY_LIMIT_TOLERANCE:1.5}") double tolerance,
+                            @Value("${CONCURRENCY_LIMIT_SMOOTHING:0.2}") double smoothing,
+                            @Value("${CONCURRENCY_LIMIT_LONG_WINDOW:600}") int longWindow,
+                            MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.limits = Arrays.stream(routes.split(","))
+        .map(String::strip)
+        .filter(route -> !route.isEmpty())
+        .distinct()
+        .sorted(Comparator.comparingInt(String::length).reversed())
+        .map(route -> new AdaptiveConcurrencyLimit(route, initialLimit, minLimit, maxLimit, tolerance, smoothing, longWindow))
+        .toArray(AdaptiveConcurrencyLimit[]::new);
+    if (enabled) {
+      for (AdaptiveConcurrencyLimit limit : limits) {
+        register(limit, meterRegistry);
+      }
+    }
+  }
+
+  /**
+   * @param path - request path, without the context path
+   * @return - limit of the route, null if the request is not limited
+   */
+  public AdaptiveConcurrencyLimit route(String path) {
+    if (!enabled) {
+      return null;
+    }
+    for (AdaptiveConcurrencyLimit limit : limits) {
+      String route = limit.getRoute();
+      if (path.startsWith(route) && (path.length() == route.length() || path.charAt(route.length()) == '/')) {
+        return limit;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return - limit, in-flight, accepted and rejected requests and latency averages per route
+   */
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("enabled", enabled);
+    Map<String, Object> routes = new LinkedHashMap<>();
+    for (AdaptiveConcurrencyLimit limit : limits) {
+      routes.put(limit.getRoute(), limit.getStats());
+    }
+    stats.put("routes", routes);
+    return stats;
+  }
+
+  private static void register(AdaptiveConcurrencyLimit limit, MeterRegistry meterRegistry) {
+    Gauge.builder("adaptive.auth.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+        .description("Adaptive concurrency limit")
+        .tag("route", limit.getRoute())
+        .register(meterRegistry);
+    Gauge.builder("adaptive.auth.concurrency.inflight", limit, AdaptiveConcurrencyLimit::getInFlight)
+        .description("Requests holding a concurrency slot")
+        .tag("route", limit.getRoute())
+        .register(meterRegistry);
+    FunctionCounter.builder("adaptive.auth.concurrency.rejected", limit, AdaptiveConcurrencyLimit::getRejected)
+        .description("Requests rejected over the concurrency limit")
+        .tag("route", limit.getRoute())
+        .register(meterRegistry);
+  }
+}
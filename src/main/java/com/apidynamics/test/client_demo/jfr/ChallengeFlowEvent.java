@@ -0,0 +1,78 @@
+package com.apidynamics.test.client_demo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One challenge-aware call, from the first upstream attempt to the final response, spanning the
+ * {@link UpstreamCallEvent}s and {@link TotpGenerationEvent}s of its challenges
+ */
+@Name(ChallengeFlowEvent.NAME)
+@Label("Challenge Flow")
+@Category({"Adaptive Auth"})
+@Description("Upstream call with in-process TOTP challenge resolution")
+@Enabled(false)
+@Threshold("0 ms")
+@StackTrace(false)
+public final class ChallengeFlowEvent extends Event {
+
+    public static final String NAME = "com.apidynamics.adaptiveauth.ChallengeFlow";
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Token Type")
+    @Description("self or server")
+    String tokenType;
+
+    @Label("Transaction Id")
+    @Description("Transaction id of the last challenge, null when the call was not challenged")
+    String transactionId;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Challenges")
+    int challenges;
+
+    @Label("Error")
+    @Description("Exception class of a failed flow")
+    String error;
+
+    /**
+     * @param endpoint - logical endpoint name of the challenged call
+     * @param tokenType - self or server
+     * @return - event timing the flow, to be {@link #complete completed}
+     */
+    public static ChallengeFlowEvent start(String endpoint, String tokenType) {
+        ChallengeFlowEvent event = new ChallengeFlowEvent();
+        event.endpoint = endpoint;
+        event.tokenType = tokenType;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event when enabled and over its threshold
+     * @param transactionId - transaction id of the last challenge, null if none
+     * @param outcome - flow outcome, null if the flow failed
+     * @param challenges - challenges resolved
+     * @param error - flow error, null on result
+     */
+    public void complete(String transactionId, String outcome, int challenges, Throwable error) {
+        end();
+        if (shouldCommit()) {
+            this.transactionId = transactionId;
+            this.outcome = outcome != null ? outcome : "ERROR";
+            this.challenges = challenges;
+            this.error = error != null ? Events.errorName(error) : null;
+            commit();
+        }
+    }
+}
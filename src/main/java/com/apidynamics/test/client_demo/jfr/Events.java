@@ -0,0 +1,34 @@
+package com.apidynamics.test.client_demo.jfr;
+
+import java.net.URI;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Field values of the adaptive auth events, only computed when an event is committed
+ */
+final class Events {
+
+    private Events() {
+    }
+
+    static String errorName(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getClass().getName();
+    }
+
+    /**
+     * @return - raw value of the first query parameter of that name, null if absent
+     */
+    static String queryParameter(URI uri, String name) {
+        String query = uri != null ? uri.getRawQuery() : null;
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name) && parameter.length() > name.length() && parameter.charAt(name.length()) == '=') {
+                return parameter.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,161 @@
+package com.apidynamics.test.client_demo.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Offline summary of a flight recording holding the adaptive auth events: count, p50 / p99 / max and total time
+ * per stage (challenge flow by endpoint, token type and outcome, TOTP generation by strategy, upstream call by
+ * endpoint and status), then the slowest challenge flows with the TOTP and upstream hops of their transaction.
+ * Run with ./gradlew jfrSummary -Pjfr.file=recording.jfr [-Pjfr.slowest=10]
+ */
+public final class RecordingAnalyzer {
+
+    private RecordingAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: RecordingAnalyzer <recording.jfr> [slowest flows, default 10]");
+            System.exit(2);
+        }
+        Summary summary = summarize(Path.of(args[0]), args.length > 1 ? Integer.parseInt(args[1]) : 10);
+        summary.print(System.out);
+    }
+
+    /**
+     * @param recording - JFR file
+     * @param slowest - slowest challenge flows listed
+     * @return - stage statistics and slowest flows
+     */
+    public static Summary summarize(Path recording, int slowest) throws IOException {
+        Map<String, StageBuilder> stages = new TreeMap<>();
+        List<RecordedEvent> flows = new ArrayList<>();
+        Map<String, List<RecordedEvent>> hops = new HashMap<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String stage = stageOf(event);
+                if (stage == null) {
+                    continue;
+                }
+                long bytes = event.getEventType().getName().equals(UpstreamCallEvent.NAME) ? Math.max(0, event.getLong("bytes")) : 0;
+                stages.computeIfAbsent(stage, name -> new StageBuilder()).add(event.getDuration().toNanos(), bytes);
+                if (event.getEventType().getName().equals(ChallengeFlowEvent.NAME)) {
+                    flows.add(event);
+                } else if (event.getString("transactionId") != null) {
+                    hops.computeIfAbsent(event.getString("transactionId"), tid -> new ArrayList<>()).add(event);
+                }
+            }
+        }
+        Map<String, Stage> summary = new TreeMap<>();
+        stages.forEach((name, builder) -> summary.put(name, builder.build()));
+        List<SlowFlow> slowFlows = flows.stream()
+                .sorted(Comparator.comparing(RecordedEvent::getDuration, Comparator.reverseOrder()))
+                .limit(slowest)
+                .map(flow -> new SlowFlow(stageOf(flow), flow.getString("transactionId"), flow.getDuration().toNanos(), hopsOf(flow, hops)))
+                .toList();
+        return new Summary(summary, slowFlows);
+    }
+
+    private static String stageOf(RecordedEvent event) {
+        return switch (event.getEventType().getName()) {
+            case ChallengeFlowEvent.NAME -> "challenge " + event.getString("endpoint") + " " + event.getString("tokenType") + " " + event.getString("outcome");
+            case TotpGenerationEvent.NAME -> "totp " + event.getString("strategy") + (event.getString("error") != null ? " failed" : "");
+            case UpstreamCallEvent.NAME -> "upstream " + event.getString("endpoint") + " " + (event.getInt("status") != 0 ? event.getInt("status") : "IO_ERROR");
+            default -> null;
+        };
+    }
+
+    private static List<String> hopsOf(RecordedEvent flow, Map<String, List<RecordedEvent>> hops) {
+        String transactionId = flow.getString("transactionId");
+        if (transactionId == null) {
+            return List.of();
+        }
+        return hops.getOrDefault(transactionId, List.of()).stream()
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .map(hop -> stageOf(hop) + " " + toMillis(hop.getDuration().toNanos()) + " ms")
+                .toList();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.3f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * @param count - events of the stage
+     * @param p50Nanos - median duration
+     * @param p99Nanos - 99th percentile duration
+     * @param maxNanos - longest duration
+     * @param totalNanos - summed durations
+     * @param bytes - summed response bytes (upstream calls only)
+     */
+    public record Stage(long count, long p50Nanos, long p99Nanos, long maxNanos, long totalNanos, long bytes) {
+    }
+
+    /**
+     * @param stage - stage of the flow
+     * @param transactionId - transaction id of its last challenge, null when it was not challenged
+     * @param durationNanos - flow duration
+     * @param hops - TOTP generations and upstream calls of the transaction, in start order
+     */
+    public record SlowFlow(String stage, String transactionId, long durationNanos, List<String> hops) {
+    }
+
+    public record Summary(Map<String, Stage> stages, List<SlowFlow> slowestFlows) {
+
+        public void print(PrintStream out) {
+            out.printf("%-60s %8s %10s %10s %10s %12s %12s%n", "stage", "count", "p50 ms", "p99 ms", "max ms", "total ms", "bytes");
+            stages.forEach((name, stage) -> out.printf("%-60s %8d %10s %10s %10s %12s %12d%n", name, stage.count(),
+                    toMillis(stage.p50Nanos()), toMillis(stage.p99Nanos()), toMillis(stage.maxNanos()), toMillis(stage.totalNanos()), stage.bytes()));
+            if (!slowestFlows.isEmpty()) {
+                out.println();
+                out.println("slowest challenge flows");
+            }
+            for (SlowFlow flow : slowestFlows) {
+                out.printf("%s ms  %s  tid=%s%n", toMillis(flow.durationNanos()), flow.stage(), flow.transactionId());
+                flow.hops().forEach(hop -> out.println("    " + hop));
+            }
+        }
+    }
+
+    private static final class StageBuilder {
+
+        private long[] durations = new long[64];
+        private int count;
+        private long bytes;
+
+        private void add(long durationNanos, long bytes) {
+            if (count == durations.length) {
+                durations = Arrays.copyOf(durations, count * 2);
+            }
+            durations[count++] = durationNanos;
+            this.bytes += bytes;
+        }
+
+        private Stage build() {
+            long[] sorted = Arrays.copyOf(durations, count);
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long duration : sorted) {
+                total += duration;
+            }
+            return new Stage(count, percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[count - 1], total, bytes);
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.apidynamics.test.client_demo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One TOTP obtained for a challenge: the HMAC computation of a self generated token,
+ * or the round-trip to the server for a server generated one
+ */
+@Name(TotpGenerationEvent.NAME)
+@Label("TOTP Generation")
+@Category({"Adaptive Auth"})
+@Description("TOTP token generated in-process or fetched from the server")
+@Enabled(false)
+@Threshold("0 ms")
+@StackTrace(false)
+public final class TotpGenerationEvent extends Event {
+
+    public static final String NAME = "com.apidynamics.adaptiveauth.TotpGeneration";
+
+    @Label("Strategy")
+    @Description("self or server")
+    String strategy;
+
+    @Label("Transaction Id")
+    @Description("Transaction id of the challenge the token is generated for")
+    String transactionId;
+
+    @Label("Error")
+    @Description("Exception class or failed status of a token that could not be obtained")
+    String error;
+
+    /**
+     * @param strategy - self or server
+     * @param transactionId - transaction id of the challenge
+     * @return - event timing the generation, to be {@link #complete completed}
+     */
+    public static TotpGenerationEvent start(String strategy, String transactionId) {
+        TotpGenerationEvent event = new TotpGenerationEvent();
+        event.strategy = strategy;
+        event.transactionId = transactionId;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event when enabled and over its threshold
+     * @param error - why no token was obtained, null on success
+     */
+    public void complete(String error) {
+        end();
+        if (shouldCommit()) {
+            this.error = error;
+            commit();
+        }
+    }
+
+    /**
+     * Commits the event of a token request that failed without response
+     * @param error - transport or parsing error
+     */
+    public void fail(Throwable error) {
+        complete(Events.errorName(error));
+    }
+}
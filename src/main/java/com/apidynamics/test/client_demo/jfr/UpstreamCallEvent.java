@@ -0,0 +1,84 @@
+package com.apidynamics.test.client_demo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.springframework.http.HttpStatusCode;
+
+import java.net.URI;
+
+/**
+ * One upstream exchange actually sent (coalesced callers share it, a hedge is an exchange of its own).
+ * Committed by the thread that completes the exchange, the response executor thread for async calls.
+ * TOTP generation and validation calls carry the transaction id of their challenge (tid query parameter).
+ */
+@Name(UpstreamCallEvent.NAME)
+@Label("Upstream Call")
+@Category({"Adaptive Auth"})
+@Description("Exchange with the adaptive authentication server or httpbin")
+@Enabled(false)
+@Threshold("0 ms")
+@StackTrace(false)
+public final class UpstreamCallEvent extends Event {
+
+    public static final String NAME = "com.apidynamics.adaptiveauth.UpstreamCall";
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Transaction Id")
+    @Description("Challenge transaction id of TOTP calls, null for other calls")
+    String transactionId;
+
+    @Label("Status")
+    @Description("Response status, 0 when no response was received")
+    int status;
+
+    @Label("Bytes")
+    @Description("Response body size, -1 when unknown")
+    @DataAmount
+    long bytes;
+
+    @Label("Error")
+    @Description("Exception class of a failed exchange")
+    String error;
+
+    // only read when the event is committed
+    private transient URI uri;
+
+    /**
+     * @param endpoint - logical endpoint name of the call
+     * @param uri - called URI, its tid query parameter is recorded
+     * @return - event timing the exchange, to be {@link #complete completed}
+     */
+    public static UpstreamCallEvent start(String endpoint, URI uri) {
+        UpstreamCallEvent event = new UpstreamCallEvent();
+        event.endpoint = endpoint;
+        event.uri = uri;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event when enabled and over its threshold
+     * @param status - response status, null if no response was received
+     * @param bytes - response body size, -1 when unknown
+     * @param error - transport or parsing error, null on response
+     */
+    public void complete(HttpStatusCode status, long bytes, Throwable error) {
+        end();
+        if (shouldCommit()) {
+            this.transactionId = Events.queryParameter(uri, "tid");
+            this.status = status != null ? status.value() : 0;
+            this.bytes = bytes;
+            this.error = error != null ? Events.errorName(error) : null;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.apidynamics.test.client_demo.journal;
+
+import java.time.Instant;
+
+/**
+ * Fixed-size journal record. Slots are preallocated by {@link RequestEventRing} and overwritten in place,
+ * so recording an event allocates nothing. Only strings the request already holds are referenced.
+ */
+final class RequestEvent {
+
+    enum Kind {REQUEST, CHALLENGE}
+
+    Kind kind;
+    long epochMillis;
+    long durationNanos;
+    // request: method and path; challenge: endpoint and token strategy
+    String name;
+    String detail;
+    // request: response status; challenge: resolved challenges
+    int code;
+    // challenge outcome, null for requests
+    String outcome;
+    // exception class name, null when the request / flow completed normally
+    String error;
+
+    void set(Kind kind, long epochMillis, long durationNanos, String name, String detail, int code, String outcome, String error) {
+        this.kind = kind;
+        this.epochMillis = epochMillis;
+        this.durationNanos = durationNanos;
+        this.name = name;
+        this.detail = detail;
+        this.code = code;
+        this.outcome = outcome;
+        this.error = error;
+    }
+
+    void clear() {
+        name = null;
+        detail = null;
+        outcome = null;
+        error = null;
+    }
+
+    /**
+     * Formats the record, called on the writer thread only
+     */
+    void appendTo(StringBuilder line) {
+        line.append(Instant.ofEpochMilli(epochMillis)).append(' ');
+        if (kind == Kind.REQUEST) {
+            line.append("request ").append(name).append(' ').append(detail).append(" status=").append(code);
+        } else {
+            line.append("challenge ").append(name).append(" token_type=").append(detail)
+                    .append(" outcome=").append(outcome).append(" challenges=").append(code);
+        }
+        line.append(" duration=").append(durationNanos / 1_000_000).append('.').append(durationNanos / 100_000 % 10).append("ms");
+        if (error != null) {
+            line.append(" error=").append(error);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.apidynamics.test.client_demo.journal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free ring of preallocated {@link RequestEvent} slots, many producers and a single consumer.
+ * Each slot carries a sequence number: a producer claims a slot with one CAS on the tail when the slot
+ * sequence says it is free, fills it and publishes it by advancing the sequence; the consumer frees it
+ * the same way. A full ring makes {@link #offer} fail immediately instead of waiting.
+ */
+final class RequestEventRing {
+
+    private final RequestEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // consumer position, only touched by the single consumer
+    private long head;
+
+    /**
+     * @param capacity - number of slots, rounded up to a power of two
+     */
+    RequestEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new RequestEvent[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new RequestEvent();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return - false if the ring is full, the event is then dropped
+     */
+    boolean offer(RequestEvent.Kind kind, long epochMillis, long durationNanos, String name, String detail, int code, String outcome, String error) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long available = sequences.getAcquire(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index].set(kind, epochMillis, durationNanos, name, detail, code, outcome, error);
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                // the slot still holds an event the consumer has not read, a whole lap behind
+                return false;
+            } else {
+                // another producer claimed this position
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Hands published events to the consumer in order, single consumer thread only
+     * @param max - maximum number of events
+     * @return - number of events drained
+     */
+    int drain(Consumer<RequestEvent> consumer, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) head & mask;
+            if (sequences.getAcquire(index) != head + 1) {
+                break;
+            }
+            RequestEvent event = slots[index];
+            consumer.accept(event);
+            event.clear();
+            sequences.setRelease(index, head + slots.length);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return - events published but not yet drained, approximate
+     */
+    long size() {
+        return Math.max(0, tail.get() - head);
+    }
+}
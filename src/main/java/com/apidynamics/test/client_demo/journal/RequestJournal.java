@@ -0,0 +1,171 @@
+package com.apidynamics.test.client_demo.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Request-event journal. Request threads only copy a few fields into a preallocated ring slot,
+ * a background writer formats and logs the events. Successful requests are sampled, errors and
+ * challenge outcomes are always kept. When the writer falls behind, events are dropped and counted,
+ * request threads never wait.
+ */
+@Component
+public class RequestJournal implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestJournal.class);
+
+    private static final int DRAIN_BATCH = 256;
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final long flushIntervalNanos;
+    private final RequestEventRing ring;
+    private final Thread writer;
+    private final StringBuilder line = new StringBuilder(256);
+    private volatile boolean running = true;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    /**
+     * @param enabled - journal on / off, off records nothing
+     * @param capacity - ring slots, events beyond it are dropped until the writer catches up
+     * @param sampleRate - share of successful requests journaled, between 0 and 1
+     * @param flushIntervalMs - writer pause when the ring is empty
+     */
+    public RequestJournal(@Value("${REQUEST_JOURNAL_ENABLED:true}") boolean enabled,
+                          @Value("${REQUEST_JOURNAL_CAPACITY:8192}") int capacity,
+                          @Value("${REQUEST_JOURNAL_SAMPLE_RATE:0.01}") double sampleRate,
+                          @Value("${REQUEST_JOURNAL_FLUSH_MS:50}") long flushIntervalMs) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("REQUEST_JOURNAL_SAMPLE_RATE must be between 0 and 1 : " + sampleRate);
+        }
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.ring = new RequestEventRing(capacity);
+        this.writer = new Thread(this::writeLoop, "request-journal-writer");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            this.writer.start();
+        }
+    }
+
+    /**
+     * Records a served request, sampled unless it failed
+     * @param method - request method
+     * @param path - request URI
+     * @param status - response status
+     * @param durationNanos - time to serve the request
+     * @param error - exception thrown by the request, or null
+     */
+    public void request(String method, String path, int status, long durationNanos, Throwable error) {
+        if (!enabled) {
+            return;
+        }
+        if (error == null && status < 400 && !sampled()) {
+            sampledOut.increment();
+            return;
+        }
+        publish(RequestEvent.Kind.REQUEST, durationNanos, method, path, status, null, error);
+    }
+
+    /**
+     * Records a challenge flow outcome, never sampled out
+     * @param endpoint - challenged upstream endpoint
+     * @param tokenType - token strategy, self or server
+     * @param outcome - flow outcome, or null if the flow failed
+     * @param challenges - challenges resolved
+     * @param durationNanos - flow duration
+     * @param error - flow error, or null
+     */
+    public void challenge(String endpoint, String tokenType, String outcome, int challenges, long durationNanos, Throwable error) {
+        if (!enabled) {
+            return;
+        }
+        publish(RequestEvent.Kind.CHALLENGE, durationNanos, endpoint, tokenType, challenges, outcome != null ? outcome : "ERROR", error);
+    }
+
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getPending() {
+        return ring.size();
+    }
+
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    private boolean sampled() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    private void publish(RequestEvent.Kind kind, long durationNanos, String name, String detail, int code, String outcome, Throwable error) {
+        String errorName = error != null ? error.getClass().getSimpleName() : null;
+        if (ring.offer(kind, System.currentTimeMillis(), durationNanos, name, detail, code, outcome, errorName)) {
+            recorded.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+        }
+        // flush what was recorded before shutdown
+        int drained;
+        do {
+            drained = drain();
+        } while (drained > 0);
+    }
+
+    private int drain() {
+        return ring.drain(this::write, DRAIN_BATCH);
+    }
+
+    private void write(RequestEvent event) {
+        try {
+            line.setLength(0);
+            event.appendTo(line);
+            LOG.info(line.toString());
+            written.increment();
+        } catch (RuntimeException e) {
+            // a failing appender must not stall the ring
+            LOG.warn("Request journal write failed", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
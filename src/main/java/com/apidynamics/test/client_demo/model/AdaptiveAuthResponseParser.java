@@ -0,0 +1,129 @@
+package com.apidynamics.test.client_demo.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Field-selective streaming parsers for the Adaptive Authentication server responses.
+ * Only the fields used by the client are read, everything else is skipped without being materialized.
+ * An empty body gives a response with all fields null.
+ */
+public final class AdaptiveAuthResponseParser {
+
+    private AdaptiveAuthResponseParser() {
+    }
+
+    public static TimestampResponse timestamp(JsonParser parser, String rawBody) throws IOException {
+        String timestamp = null;
+        String transactionId = null;
+        ValidationResult validationResult = null;
+        String error = null;
+        String message = null;
+        if (startObject(parser)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "timestamp" -> timestamp = text(parser);
+                    case "transaction_id" -> transactionId = text(parser);
+                    case "validation_result" -> validationResult = validationResult(parser);
+                    case "error" -> error = text(parser);
+                    case "message" -> message = text(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new TimestampResponse(timestamp, transactionId, validationResult, error != null ? error : message, rawBody);
+    }
+
+    public static ClientTotpResponse clientTotp(JsonParser parser, String rawBody) throws IOException {
+        String totp = null;
+        String error = null;
+        String message = null;
+        if (startObject(parser)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "totp" -> totp = text(parser);
+                    case "error" -> error = text(parser);
+                    case "message" -> message = text(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new ClientTotpResponse(totp, error != null ? error : message, rawBody);
+    }
+
+    public static TotpValidationResponse totpValidation(JsonParser parser, String rawBody) throws IOException {
+        ValidationResult validationResult = null;
+        String error = null;
+        String message = null;
+        if (startObject(parser)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "validation_result" -> validationResult = validationResult(parser);
+                    case "error" -> error = text(parser);
+                    case "message" -> message = text(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new TotpValidationResponse(validationResult, error != null ? error : message, rawBody);
+    }
+
+    private static ValidationResult validationResult(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String score = null;
+        String decision = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "score" -> score = text(parser);
+                case "decision" -> decision = text(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return new ValidationResult(score, decision);
+    }
+
+    /**
+     * @return - true when the body is a JSON object, the parser is then positioned on its start
+     */
+    private static boolean startObject(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            return true;
+        }
+        if (token != null) {
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * @return - scalar value as text, structured value as JSON, null for JSON null
+     */
+    private static String text(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isStructStart()) {
+            if (parser.getCodec() == null) {
+                parser.skipChildren();
+                return null;
+            }
+            return parser.readValueAsTree().toString();
+        }
+        return parser.getText();
+    }
+}
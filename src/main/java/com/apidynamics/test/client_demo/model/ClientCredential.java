@@ -0,0 +1,45 @@
+package com.apidynamics.test.client_demo.model;
+
+import com.apidynamics.test.client_demo.service.TOTPEngine;
+
+/**
+ * Credential of one API client: its id, its public key (sent as client id to the adaptive authentication server)
+ * and the TOTP key material derived from it, built once when the credential is loaded.
+ */
+public final class ClientCredential {
+
+    private final int id;
+    private final String publicKey;
+    private final TOTPEngine.Key totpKey;
+
+    private ClientCredential(int id, String publicKey, TOTPEngine.Key totpKey) {
+        this.id = id;
+        this.publicKey = publicKey;
+        this.totpKey = totpKey;
+    }
+
+    /**
+     * @param id - client id (ApiClient id)
+     * @param publicKey - client public key, its UTF-8 bytes are the TOTP key
+     */
+    public static ClientCredential of(int id, String publicKey) {
+        return new ClientCredential(id, publicKey, TOTPEngine.Key.ofSecret(publicKey));
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public String publicKey() {
+        return publicKey;
+    }
+
+    public TOTPEngine.Key totpKey() {
+        return totpKey;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientCredential[id=" + id + "]";
+    }
+}
@@ -0,0 +1,10 @@
+package com.apidynamics.test.client_demo.model;
+
+/**
+ * Response of /adaptiveAuthentication/generateClientTotp
+ * @param totp - server generated TOTP token
+ * @param error - error or message sent by the server
+ * @param rawBody - raw response body, kept for error responses (first 2048 chars at INFO) and when debug logging is on
+ */
+public record ClientTotpResponse(String totp, String error, String rawBody) {
+}
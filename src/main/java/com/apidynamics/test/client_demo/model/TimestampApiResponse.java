@@ -0,0 +1,15 @@
+package com.apidynamics.test.client_demo.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * JSON body of /api/timestamp, null fields are left out
+ * @param timestamp - current UTC timestamp, when the call succeeded
+ * @param outcome - challenge flow outcome (SUCCESS, REJECTED, CHALLENGE_FAILED, CHALLENGE_RETRIES_EXHAUSTED)
+ * @param challenges - TOTP challenges resolved in-process
+ * @param error - why the call failed
+ * @param validationResult - adaptive authentication result of a rejected call
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TimestampApiResponse(String timestamp, String outcome, int challenges, String error, ValidationResult validationResult) {
+}
@@ -0,0 +1,57 @@
+package com.apidynamics.test.client_demo.model;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One item of a multi-client timestamp request: the challenge flow of a client with a TOTP strategy
+ * @param client - client public key, or client id
+ * @param tokenType - Token generation strategy (self, server), self when missing
+ */
+public record TimestampBatchItem(String client, String tokenType) {
+
+    /**
+     * Streams a JSON array of {"client", "token_type"} objects, unknown fields are skipped
+     * @param parser - parser positioned before the array
+     * @param maxItems - items accepted
+     * @return - the items, in request order
+     * @throws JsonParseException - when the body is not an array of objects, has more than maxItems items or
+     * a client or token_type that is not a scalar
+     */
+    public static List<TimestampBatchItem> readAll(JsonParser parser, int maxItems) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected a JSON array of client items");
+        }
+        List<TimestampBatchItem> items = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            if (items.size() == maxItems) {
+                throw new JsonParseException(parser, "More than " + maxItems + " client items");
+            }
+            String client = null;
+            String tokenType = "self";
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "client" -> client = TotpBatchItem.scalar(parser, value, field);
+                    case "token_type" -> {
+                        String type = TotpBatchItem.scalar(parser, value, field);
+                        tokenType = type != null ? type : "self";
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            items.add(new TimestampBatchItem(client, tokenType));
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new JsonParseException(parser, "Expected a JSON array of client items");
+        }
+        return items;
+    }
+}
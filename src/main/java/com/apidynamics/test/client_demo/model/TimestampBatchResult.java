@@ -0,0 +1,30 @@
+package com.apidynamics.test.client_demo.model;
+
+import java.util.Map;
+
+/**
+ * Result of one multi-client timestamp item, flow fields are only set when its challenge flow completed
+ * @param index - position of the item in the request
+ * @param client - client as requested
+ * @param tokenType - Token generation strategy (self, server)
+ * @param outcome - challenge flow outcome, or UNKNOWN_CLIENT, ERROR, DEADLINE_EXCEEDED
+ * @param status - status of the last upstream response
+ * @param timestamp - current UTC timestamp, on success
+ * @param challenges - number of TOTP challenges resolved
+ * @param error - why the flow failed
+ * @param queuedNanos - time waiting for a parallelism slot
+ * @param durationNanos - challenge flow duration, from the slot acquisition
+ * @param stageNanos - total duration of each flow stage (upstream, totp, validate, retry)
+ */
+public record TimestampBatchResult(int index, String client, String tokenType, String outcome, Integer status, String timestamp,
+                                   Integer challenges, String error, long queuedNanos, long durationNanos, Map<String, Long> stageNanos) {
+
+    public static final String UNKNOWN_CLIENT = "UNKNOWN_CLIENT";
+    public static final String ERROR = "ERROR";
+    public static final String DEADLINE_EXCEEDED = "DEADLINE_EXCEEDED";
+
+    public static TimestampBatchResult failed(int index, String client, String tokenType, String outcome, String error,
+                                              long queuedNanos, long durationNanos) {
+        return new TimestampBatchResult(index, client, tokenType, outcome, null, null, null, error, queuedNanos, durationNanos, Map.of());
+    }
+}
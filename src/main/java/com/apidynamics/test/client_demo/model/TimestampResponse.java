@@ -0,0 +1,12 @@
+package com.apidynamics.test.client_demo.model;
+
+/**
+ * Response of /api/timestamp
+ * @param timestamp - current UTC timestamp, on success
+ * @param transactionId - adaptive transaction id, when a TOTP challenge is required (401)
+ * @param validationResult - adaptive scoring result, when the call is rejected
+ * @param error - error or message sent by the server
+ * @param rawBody - raw response body, kept for error responses (first 2048 chars at INFO) and when debug logging is on
+ */
+public record TimestampResponse(String timestamp, String transactionId, ValidationResult validationResult, String error, String rawBody) {
+}
@@ -0,0 +1,82 @@
+package com.apidynamics.test.client_demo.model;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One item of a bulk TOTP request: with an otp it is validated, without it an OTP is generated
+ * @param key - secret credential key (HEX)
+ * @param otp - OTP to validate, or null to generate one
+ * @param step - TOTP step, or null for the current step
+ */
+public record TotpBatchItem(String key, String otp, Long step) {
+
+    /**
+     * Streams a JSON array of {"key", "otp", "step"} objects, unknown fields are skipped
+     * @param parser - parser positioned before the array
+     * @param maxItems - items accepted
+     * @return - the items, in request order
+     * @throws JsonParseException - when the body is not an array of objects, has more than maxItems items,
+     * a key or otp that is not a scalar or a step that is not an integer
+     */
+    public static List<TotpBatchItem> readAll(JsonParser parser, int maxItems) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected a JSON array of TOTP items");
+        }
+        List<TotpBatchItem> items = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            if (items.size() == maxItems) {
+                throw new JsonParseException(parser, "More than " + maxItems + " TOTP items");
+            }
+            String key = null;
+            String otp = null;
+            Long step = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "key" -> key = scalar(parser, value, field);
+                    case "otp" -> otp = scalar(parser, value, field);
+                    case "step" -> step = step(parser, value);
+                    default -> parser.skipChildren();
+                }
+            }
+            items.add(new TotpBatchItem(key, otp, step));
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new JsonParseException(parser, "Expected a JSON array of TOTP items");
+        }
+        return items;
+    }
+
+    /**
+     * @return - the text of a scalar value, null for a JSON null
+     * @throws JsonParseException - for an object or array, which would otherwise be read field by field into the item
+     */
+    static String scalar(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!value.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a scalar value for field '" + field + "'");
+        }
+        return parser.getText();
+    }
+
+    private static Long step(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        // getValueAsLong would coerce "abc" to 0, true to 1 and 1.9 to 1
+        if (value != JsonToken.VALUE_NUMBER_INT) {
+            throw new JsonParseException(parser, "Expected an integer value for field 'step'");
+        }
+        return parser.getLongValue();
+    }
+}
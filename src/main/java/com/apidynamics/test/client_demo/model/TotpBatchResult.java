@@ -0,0 +1,28 @@
+package com.apidynamics.test.client_demo.model;
+
+/**
+ * Result of one bulk TOTP item, only the fields of its kind are set
+ * @param index - position of the item in the request
+ * @param otp - generated OTP
+ * @param valid - validation result
+ * @param drift - offset of the step the OTP matched, from the requested step
+ * @param error - why the item could not be processed
+ */
+public record TotpBatchResult(int index, String otp, Boolean valid, Integer drift, String error) {
+
+    public static TotpBatchResult generated(int index, String otp) {
+        return new TotpBatchResult(index, otp, null, null, null);
+    }
+
+    public static TotpBatchResult validated(int index, boolean valid, Integer drift) {
+        return new TotpBatchResult(index, null, valid, drift, null);
+    }
+
+    public static TotpBatchResult rejected(int index, String error) {
+        return new TotpBatchResult(index, null, false, null, error);
+    }
+
+    public static TotpBatchResult failed(int index, String error) {
+        return new TotpBatchResult(index, null, null, null, error);
+    }
+}
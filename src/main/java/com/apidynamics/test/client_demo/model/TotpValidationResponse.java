@@ -0,0 +1,10 @@
+package com.apidynamics.test.client_demo.model;
+
+/**
+ * Response of /adaptiveAuthentication/validateClientTotp
+ * @param validationResult - adaptive scoring result
+ * @param error - error or message sent by the server
+ * @param rawBody - raw response body, kept for error responses (first 2048 chars at INFO) and when debug logging is on
+ */
+public record TotpValidationResponse(ValidationResult validationResult, String error, String rawBody) {
+}
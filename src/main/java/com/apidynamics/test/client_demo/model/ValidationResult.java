@@ -0,0 +1,9 @@
+package com.apidynamics.test.client_demo.model;
+
+/**
+ * Adaptive Authentication scoring result ("validation_result")
+ * @param score - risk score, as sent by the server
+ * @param decision - adaptive decision
+ */
+public record ValidationResult(String score, String decision) {
+}
@@ -2,9 +2,13 @@ package com.apidynamics.test.client_demo.repository;
 
 
 import com.apidynamics.test.client_demo.entity.ApiClient;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.stereotype.Repository;
 
+/**
+ * Client settings store. Implemented by Spring Data JPA (H2) by default,
+ * by {@link FileApiClientRepository} with the "file" profile.
+ */
 @Repository
-public interface ApiClientRepository extends JpaRepository<ApiClient, Integer> {
+public interface ApiClientRepository extends ListCrudRepository<ApiClient, Integer> {
 }
@@ -0,0 +1,292 @@
+package com.apidynamics.test.client_demo.repository;
+
+import com.apidynamics.test.client_demo.entity.ApiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * File-backed {@link ApiClientRepository} of the "file" profile, used instead of JPA / Hibernate / H2 (whose
+ * auto-configuration the profile excludes). Clients live in a map, every change is appended to a log file of
+ * "S id publicKey" (save) and "D id" (delete) lines, replayed at startup. Readers never touch the file,
+ * writers are serialized. The log is rewritten with the live clients only once it holds mostly stale records.
+ */
+@Repository
+@Profile("file")
+public class FileApiClientRepository implements ApiClientRepository, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileApiClientRepository.class);
+
+    private static final int COMPACTION_MIN_RECORDS = 64;
+
+    private final Path file;
+    private final boolean fsync;
+    private final Map<Integer, ApiClient> clients = new ConcurrentHashMap<>();
+    private FileChannel log;
+    private int records;
+
+    /**
+     * @param file - log file, created with its parent directories if missing
+     * @param fsync - force every change to disk before returning
+     */
+    public FileApiClientRepository(@Value("${CLIENT_STORE_FILE:data/api-clients.log}") String file,
+                                   @Value("${CLIENT_STORE_FSYNC:true}") boolean fsync) {
+        this.file = Path.of(file);
+        this.fsync = fsync;
+        try {
+            if (this.file.getParent() != null) {
+                Files.createDirectories(this.file.getParent());
+            }
+            this.log = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replay();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open client store " + file, e);
+        }
+        LOG.info("Client store {} loaded, {} client(s) from {} record(s)", this.file, clients.size(), records);
+    }
+
+    @Override
+    public synchronized <S extends ApiClient> S save(S entity) {
+        if (entity.getId() == null) {
+            throw new IllegalArgumentException("ApiClient id is required");
+        }
+        ApiClient copy = copy(entity);
+        append("S " + copy.getId() + " " + escape(copy.getPublicKey()) + "\n");
+        clients.put(copy.getId(), copy);
+        compactIfStale();
+        return entity;
+    }
+
+    @Override
+    public <S extends ApiClient> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        for (S entity : entities) {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<ApiClient> findById(Integer id) {
+        return Optional.ofNullable(clients.get(id)).map(FileApiClientRepository::copy);
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return clients.containsKey(id);
+    }
+
+    @Override
+    public List<ApiClient> findAll() {
+        List<ApiClient> all = new ArrayList<>(clients.size());
+        clients.values().forEach(client -> all.add(copy(client)));
+        return all;
+    }
+
+    @Override
+    public List<ApiClient> findAllById(Iterable<Integer> ids) {
+        List<ApiClient> found = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(found::add));
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return clients.size();
+    }
+
+    @Override
+    public synchronized void deleteById(Integer id) {
+        if (clients.containsKey(id)) {
+            append("D " + id + "\n");
+            clients.remove(id);
+            compactIfStale();
+        }
+    }
+
+    @Override
+    public void delete(ApiClient entity) {
+        deleteById(entity.getId());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Integer> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends ApiClient> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public synchronized void deleteAll() {
+        List.copyOf(clients.keySet()).forEach(this::deleteById);
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        log.close();
+    }
+
+    /**
+     * Loads the log, a torn last line (crash during an append) is cut off
+     */
+    private void replay() throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        int start = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                apply(new String(content, start, i - start, StandardCharsets.UTF_8));
+                records++;
+                start = i + 1;
+            }
+        }
+        if (start < content.length) {
+            LOG.warn("Client store {} : incomplete last record dropped", file);
+            log.truncate(start);
+        }
+        log.position(start);
+    }
+
+    private void apply(String record) {
+        String[] fields = record.split(" ", 3);
+        if (fields.length == 3 && fields[0].equals("S")) {
+            int id = Integer.parseInt(fields[1]);
+            clients.put(id, ApiClient.builder().id(id).publicKey(unescape(fields[2])).build());
+        } else if (fields.length == 2 && fields[0].equals("D")) {
+            clients.remove(Integer.parseInt(fields[1]));
+        } else {
+            throw new IllegalStateException("Corrupted client store " + file + " : " + record);
+        }
+    }
+
+    private void append(String record) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            if (fsync) {
+                log.force(false);
+            }
+            records++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write client store " + file, e);
+        }
+    }
+
+    /**
+     * Writes the live clients to a new log and atomically moves it over the current one. The current log is only
+     * swapped for the new one once the move succeeded: the change that triggered the compaction is already written,
+     * a failed compaction is logged and leaves the store on its current log, retried on the next change.
+     */
+    private void compactIfStale() {
+        if (records < COMPACTION_MIN_RECORDS || records < clients.size() * 2) {
+            return;
+        }
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        FileChannel compactedLog = null;
+        try {
+            StringBuilder content = new StringBuilder();
+            clients.values().forEach(client -> content.append("S ").append(client.getId()).append(' ').append(escape(client.getPublicKey())).append('\n'));
+            compactedLog = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                compactedLog.write(buffer);
+            }
+            compactedLog.force(true);
+            // the open channel follows the file it was opened on through the move
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            closeQuietly(compactedLog);
+            try {
+                Files.deleteIfExists(compacted);
+            } catch (IOException ignored) {
+                // overwritten by the next compaction
+            }
+            LOG.warn("Could not compact client store {}", file, e);
+            return;
+        }
+        if (fsync) {
+            forceDirectory();
+        }
+        FileChannel previous = log;
+        log = compactedLog;
+        records = clients.size();
+        closeQuietly(previous);
+    }
+
+    /**
+     * Makes the move of the compacted log durable. Some platforms (Windows) cannot open a directory, the move then
+     * only becomes durable whenever the file system flushes its metadata.
+     */
+    private void forceDirectory() {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOG.debug("Client store directory {} could not be forced", directory, e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close client store log", e);
+        }
+    }
+
+    private static ApiClient copy(ApiClient client) {
+        return ApiClient.builder().id(client.getId()).publicKey(client.getPublicKey()).build();
+    }
+
+    /**
+     * Keeps one record per line, a null key is written as a lone "\0"
+     */
+    static String escape(String value) {
+        if (value == null) {
+            return "\\0";
+        }
+        return value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String unescape(String value) {
+        if (value.equals("\\0")) {
+            return null;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.jfr.ChallengeFlowEvent;
+import com.apidynamics.test.client_demo.jfr.TotpGenerationEvent;
+import com.apidynamics.test.client_demo.journal.RequestJournal;
+import com.apidynamics.test.client_demo.model.AdaptiveAuthResponseParser;
+import com.apidynamics.test.client_demo.model.ClientCredential;
+import com.apidynamics.test.client_demo.model.ClientTotpResponse;
+import com.apidynamics.test.client_demo.model.TimestampResponse;
+import com.apidynamics.test.client_demo.model.TotpValidationResponse;
+import com.apidynamics.test.client_demo.model.ValidationResult;
+import io.micrometer.observation.Observation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.Pair;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Challenge-aware call pipeline. When an upstream call is answered with a 401 and a transaction_id,
+ * the TOTP challenge is resolved (self or server generated token, then validation) and the
+ * original call is retried in the same request, without a browser redirect round-trip.
+ * The retried call reuses the headers captured for the first attempt.
+ * Flows and TOTP generations are recorded as JFR {@link ChallengeFlowEvent}s / {@link TotpGenerationEvent}s when enabled.
+ */
+@Service
+public class AdaptiveAuthChallengeService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveAuthChallengeService.class);
+
+    // how many challenges may be resolved for a single call before giving up
+    @Value("${ADAPTIVE_AUTH_MAX_CHALLENGES:2}")
+    private int maxChallenges;
+
+    private final DemoServerApiService demoServerApiService;
+    private final TOTPService totpService;
+    private final ClientIdService clientIdService;
+    private final DemoServerClient demoServerClient;
+    private final UpstreamCallCoalescer upstreamCallCoalescer;
+    private final AdaptiveAuthObservations observations;
+    private final RequestJournal requestJournal;
+
+    @Autowired
+    public AdaptiveAuthChallengeService(DemoServerApiService demoServerApiService, TOTPService totpService, ClientIdService clientIdService, DemoServerClient demoServerClient,
+                                        UpstreamCallCoalescer upstreamCallCoalescer, AdaptiveAuthObservations observations, RequestJournal requestJournal) {
+        this.demoServerApiService = demoServerApiService;
+        this.totpService = totpService;
+        this.clientIdService = clientIdService;
+        this.demoServerClient = demoServerClient;
+        this.upstreamCallCoalescer = upstreamCallCoalescer;
+        this.observations = observations;
+        this.requestJournal = requestJournal;
+    }
+
+    /**
+     * Get current UTC timestamp from demo server, resolving TOTP challenges in-process.
+     * Must be called on the request thread, inbound headers are captured before the call leaves it
+     * @param tokenType - Token generation strategy (self, server)
+     * @return - future of the challenge flow result
+     */
+    public CompletableFuture<ChallengeResult> getTimestampAsync(String tokenType) {
+        return getTimestampAsync(tokenType, clientIdService.getClient());
+    }
+
+    /**
+     * Same as {@link #getTimestampAsync(String)} on behalf of a given client
+     * @param tokenType - Token generation strategy (self, server)
+     * @param client - client the calls and TOTP tokens are made for
+     * @return - future of the challenge flow result
+     */
+    public CompletableFuture<ChallengeResult> getTimestampAsync(String tokenType, ClientCredential client) {
+        return executeAsync(demoServerApiService.timestampCall(client.publicKey()), tokenType, client);
+    }
+
+    /**
+     * Blocking variant of {@link #getTimestampAsync(String)}
+     * @param tokenType - Token generation strategy (self, server)
+     * @return - challenge flow result
+     */
+    public ChallengeResult getTimestamp(String tokenType) {
+        return getTimestampAsync(tokenType).join();
+    }
+
+    /**
+     * @param call - upstream call, retried as is after each resolved challenge
+     * @param tokenType - Token generation strategy (self, server)
+     * @return - future of the challenge flow result
+     */
+    public CompletableFuture<ChallengeResult> executeAsync(UpstreamCall call, String tokenType) {
+        return executeAsync(call, tokenType, clientIdService.getClient());
+    }
+
+    /**
+     * @param call - upstream call, retried as is after each resolved challenge
+     * @param tokenType - Token generation strategy (self, server)
+     * @param client - client challenges are resolved for, must be the client the call is made for
+     * @return - future of the challenge flow result
+     */
+    public CompletableFuture<ChallengeResult> executeAsync(UpstreamCall call, String tokenType, ClientCredential client) {
+        // identical concurrent flows share one challenge resolution (the client id header is part of the call key)
+        return upstreamCallCoalescer.execute(call, "challenge-" + tokenType.toLowerCase(Locale.ROOT), () -> observe(call, tokenType, client));
+    }
+
+    private CompletableFuture<ChallengeResult> observe(UpstreamCall call, String tokenType, ClientCredential client) {
+        long start = System.nanoTime();
+        Observation observation = observations.challengeFlowStarted(call, tokenType);
+        String strategy = tokenType.equalsIgnoreCase("self") ? "self" : "server";
+        ChallengeFlowEvent event = ChallengeFlowEvent.start(call.endpoint(), strategy);
+        Flow flow = new Flow(call, tokenType, client);
+        CompletableFuture<ChallengeResult> result;
+        try {
+            result = attempt(flow);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((challengeResult, error) -> {
+            observations.challengeFlowCompleted(observation, challengeResult, error);
+            event.complete(flow.transactionId, challengeResult != null ? challengeResult.outcome().name() : null,
+                    challengeResult != null ? challengeResult.challenges() : flow.challenges, error);
+            requestJournal.challenge(call.endpoint(), strategy,
+                    challengeResult != null ? challengeResult.outcome().name() : null,
+                    challengeResult != null ? challengeResult.challenges() : 0, System.nanoTime() - start, error);
+        });
+    }
+
+    private CompletableFuture<ChallengeResult> attempt(Flow flow) {
+        long start = System.nanoTime();
+        return demoServerClient.exchangeAsync(flow.call, AdaptiveAuthResponseParser::timestamp).thenCompose(response -> {
+            flow.stage(flow.challenges == 0 ? "upstream" : "retry", start);
+            HttpStatusCode status = response.getFirst();
+            TimestampResponse body = response.getSecond();
+            LOG.debug("{} call status : {}", flow.call.endpoint(), status);
+            LOG.debug("{} call response : {}", flow.call.endpoint(), body.rawBody());
+
+            if (status.is2xxSuccessful()) {
+                return flow.complete(status, body, null, ChallengeResult.Outcome.SUCCESS);
+            }
+            String tid = status.isSameCodeAs(HttpStatus.UNAUTHORIZED) ? body.transactionId() : null;
+            if (tid == null) {
+                return flow.complete(status, body, null, ChallengeResult.Outcome.REJECTED);
+            }
+            if (flow.challenges >= maxChallenges) {
+                return flow.complete(status, body, null, ChallengeResult.Outcome.CHALLENGE_RETRIES_EXHAUSTED);
+            }
+            flow.challenges++;
+            flow.transactionId = tid;
+            return resolveTotpChallenge(flow, tid).thenCompose(failure -> failure == null
+                    ? attempt(flow)
+                    : flow.complete(failure.getFirst(), body, failure.getSecond(), ChallengeResult.Outcome.CHALLENGE_FAILED));
+        });
+    }
+
+    /**
+     * Generates or Gets a TOTP token depending on the token generation strategy, then validates it
+     * @param flow - current flow
+     * @param transactionId - Current Adaptive Auth Transaction Id
+     * @return - null when the challenge is resolved, otherwise status and error of the failed call
+     */
+    private CompletableFuture<Pair<HttpStatusCode, String>> resolveTotpChallenge(Flow flow, String transactionId) {
+        long start = System.nanoTime();
+        if (flow.tokenType.equalsIgnoreCase("self")) {
+            // gen top token flow
+            TotpGenerationEvent event = TotpGenerationEvent.start("self", transactionId);
+            String totp = totpService.generateTOTP(flow.client);
+            event.complete(null);
+            flow.stage("totp", start);
+            return validate(flow, transactionId, totp);
+        }
+
+        // get otp from server
+        TotpGenerationEvent event = TotpGenerationEvent.start("server", transactionId);
+        return totpService.getTotpTokenAsync(transactionId, flow.client.publicKey()).whenComplete((totpFromServerResult, error) -> {
+            if (error != null) {
+                event.fail(error);
+            }
+        }).thenCompose(totpFromServerResult -> {
+            flow.stage("totp", start);
+            HttpStatusCode totpStatusCode = totpFromServerResult.getFirst();
+            ClientTotpResponse totpResponseBody = totpFromServerResult.getSecond();
+            LOG.debug("Server TOTP generation call status : {}", totpStatusCode);
+            LOG.debug("Server TOTP generation call response : {}", totpResponseBody.rawBody());
+
+            // if server TOTP generation call results in error, then return the error
+            if (totpStatusCode.isError() || totpResponseBody.totp() == null) {
+                event.complete("status " + totpStatusCode.value());
+                return CompletableFuture.completedFuture(Pair.of(totpStatusCode, errorOf(totpResponseBody.error(), totpResponseBody.rawBody())));
+            }
+
+            // if server TOTP token was returned successfully, then use it to validate it
+            event.complete(null);
+            return validate(flow, transactionId, totpResponseBody.totp());
+        });
+    }
+
+    private CompletableFuture<Pair<HttpStatusCode, String>> validate(Flow flow, String transactionId, String totp) {
+        long start = System.nanoTime();
+        return demoServerApiService.validateClientTotpAsync(transactionId, totp, flow.client.publicKey()).thenApply(totpValidationResult -> {
+            flow.stage("validate", start);
+            HttpStatusCode totpValidationStatusCode = totpValidationResult.getFirst();
+            TotpValidationResponse totpValidationResponseBody = totpValidationResult.getSecond();
+            LOG.debug("TOTP validation call status : {}", totpValidationStatusCode);
+            LOG.debug("TOTP validation call response : {}", totpValidationResponseBody.rawBody());
+            if (totpValidationStatusCode.is2xxSuccessful()) {
+                return null;
+            }
+            ValidationResult validationResult = totpValidationResponseBody.validationResult();
+            String error = validationResult != null
+                    ? String.format("TOTP validation failed. score=%s, decision=%s", validationResult.score(), validationResult.decision())
+                    : errorOf(totpValidationResponseBody.error(), totpValidationResponseBody.rawBody());
+            return Pair.of(totpValidationStatusCode, error);
+        });
+    }
+
+    private static String errorOf(String error, String rawBody) {
+        if (error != null) {
+            return error;
+        }
+        return rawBody != null ? rawBody : "no error details";
+    }
+
+    /**
+     * State of one challenge flow. Stages run one after the other, each future
+     * completion happens-before the next stage, so no synchronization is needed.
+     */
+    private static final class Flow {
+        private final UpstreamCall call;
+        private final String tokenType;
+        private final ClientCredential client;
+        private final List<ChallengeResult.Stage> stages = new ArrayList<>(4);
+        private int challenges;
+        private String transactionId;
+
+        private Flow(UpstreamCall call, String tokenType, ClientCredential client) {
+            this.call = call;
+            this.tokenType = tokenType;
+            this.client = client;
+        }
+
+        private void stage(String name, long startNanos) {
+            stages.add(new ChallengeResult.Stage(name, System.nanoTime() - startNanos));
+        }
+
+        private CompletableFuture<ChallengeResult> complete(HttpStatusCode status, TimestampResponse response, String challengeError, ChallengeResult.Outcome outcome) {
+            LOG.debug("{} challenge flow {} after {} challenge(s), stages : {}", call.endpoint(), outcome, challenges, stages);
+            return CompletableFuture.completedFuture(new ChallengeResult(status, response, challengeError, outcome, challenges, List.copyOf(stages)));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.apidynamics.test.client_demo.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Observations of the adaptive authentication traffic:
+ * <ul>
+ *     <li>adaptive.auth.upstream - each upstream call actually sent, tags endpoint, status, outcome</li>
+ *     <li>adaptive.auth.challenge - each challenge flow, tags endpoint, token.type, outcome, challenges</li>
+ *     <li>adaptive.auth.totp.generation - self TOTP generation, a plain timer since it takes microseconds</li>
+ * </ul>
+ * Tag values come from fixed sets (endpoint names, status codes, enum outcomes), never from request input.
+ * Observations are started and stopped without opening a scope, so no thread local is touched on the async path.
+ */
+@Component
+public class AdaptiveAuthObservations {
+
+    static final String UPSTREAM = "adaptive.auth.upstream";
+    static final String CHALLENGE = "adaptive.auth.challenge";
+    static final String TOTP_GENERATION = "adaptive.auth.totp.generation";
+
+    private final ObservationRegistry observationRegistry;
+    private final Timer totpGenerationTimer;
+
+    public AdaptiveAuthObservations(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.totpGenerationTimer = Timer.builder(TOTP_GENERATION)
+                .description("Self TOTP token generation")
+                .tag("token.type", "self")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param call - upstream call about to be sent
+     * @return - started observation, to be passed to {@link #upstreamCallCompleted}
+     */
+    public Observation upstreamCallStarted(UpstreamCall call) {
+        return Observation.createNotStarted(UPSTREAM, observationRegistry)
+                .contextualName("adaptive-auth " + call.endpoint())
+                .lowCardinalityKeyValue("endpoint", call.endpoint())
+                .start();
+    }
+
+    /**
+     * @param observation - observation of the call
+     * @param status - response status, null if no response was received
+     * @param error - transport or parsing error, null on response
+     */
+    public void upstreamCallCompleted(Observation observation, HttpStatusCode status, Throwable error) {
+        observation.lowCardinalityKeyValue("status", status != null ? Integer.toString(status.value()) : "IO_ERROR");
+        observation.lowCardinalityKeyValue("outcome", outcome(status));
+        if (error != null) {
+            observation.error(unwrap(error));
+        }
+        observation.stop();
+    }
+
+    /**
+     * @param call - challenged upstream call
+     * @param tokenType - Token generation strategy (self, server)
+     * @return - started observation, to be passed to {@link #challengeFlowCompleted}
+     */
+    public Observation challengeFlowStarted(UpstreamCall call, String tokenType) {
+        return Observation.createNotStarted(CHALLENGE, observationRegistry)
+                .contextualName("adaptive-auth challenge " + call.endpoint())
+                .lowCardinalityKeyValue("endpoint", call.endpoint())
+                .lowCardinalityKeyValue("token.type", tokenTypeTag(tokenType))
+                .start();
+    }
+
+    /**
+     * @param observation - observation of the flow
+     * @param result - flow result, null if the flow failed
+     * @param error - flow error, null on result
+     */
+    public void challengeFlowCompleted(Observation observation, ChallengeResult result, Throwable error) {
+        if (result != null) {
+            observation.lowCardinalityKeyValue("outcome", result.outcome().name().toLowerCase(Locale.ROOT));
+            observation.lowCardinalityKeyValue("challenges", Integer.toString(result.challenges()));
+        } else {
+            observation.lowCardinalityKeyValue("outcome", "error");
+            observation.lowCardinalityKeyValue("challenges", "unknown");
+        }
+        if (error != null) {
+            observation.error(unwrap(error));
+        }
+        observation.stop();
+    }
+
+    /**
+     * @param nanos - self TOTP generation time
+     */
+    public void totpGenerated(long nanos) {
+        totpGenerationTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String tokenTypeTag(String tokenType) {
+        // token_type is a request parameter, tag the strategy actually used: anything but self gets a server token
+        return tokenType.equalsIgnoreCase("self") ? "self" : "server";
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static String outcome(HttpStatusCode status) {
+        if (status == null) {
+            return "UNKNOWN";
+        }
+        HttpStatus.Series series = HttpStatus.Series.resolve(status.value());
+        return series != null ? series.name() : "UNKNOWN";
+    }
+}
@@ -0,0 +1,62 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.model.TimestampResponse;
+import com.apidynamics.test.client_demo.model.ValidationResult;
+import org.springframework.http.HttpStatusCode;
+
+import java.util.List;
+
+/**
+ * Result of an upstream call run through {@link AdaptiveAuthChallengeService}
+ * @param status - status of the last upstream response (challenge call status when the challenge failed)
+ * @param response - last response of the challenged call
+ * @param challengeError - error of the failed TOTP generation or validation call
+ * @param outcome - how the call ended
+ * @param challenges - number of TOTP challenges resolved in-process
+ * @param stages - latency of each stage, in execution order
+ */
+public record ChallengeResult(HttpStatusCode status, TimestampResponse response, String challengeError, Outcome outcome, int challenges, List<Stage> stages) {
+
+    public enum Outcome {
+        // upstream call succeeded, with or without resolved challenges
+        SUCCESS,
+        // upstream call failed with something else than a TOTP challenge (e.g. adaptive decision)
+        REJECTED,
+        // server TOTP generation or TOTP validation failed
+        CHALLENGE_FAILED,
+        // still challenged after the configured number of challenges
+        CHALLENGE_RETRIES_EXHAUSTED
+    }
+
+    /**
+     * @return - why the call failed, as shown to the user, null when it succeeded
+     */
+    public String error() {
+        return switch (outcome) {
+            case SUCCESS -> null;
+            case CHALLENGE_FAILED -> challengeError;
+            case CHALLENGE_RETRIES_EXHAUSTED -> String.format("TOTP challenge still required after %d challenge(s)", challenges);
+            case REJECTED -> {
+                ValidationResult validationResult = response.validationResult();
+                if (validationResult != null) {
+                    yield String.format("Adaptive Authentication Result. score=%s, decision=%s", validationResult.score(), validationResult.decision());
+                }
+                if (response.error() != null) {
+                    yield response.error();
+                }
+                yield response.rawBody() != null && !response.rawBody().isBlank() ? response.rawBody() : String.format("no error details (status %d)", status.value());
+            }
+        };
+    }
+
+    /**
+     * @param name - upstream, totp, validate or retry
+     * @param nanos - stage duration
+     */
+    public record Stage(String name, long nanos) {
+        @Override
+        public String toString() {
+            return String.format("%s=%.1fms", name, nanos / 1e6);
+        }
+    }
+}
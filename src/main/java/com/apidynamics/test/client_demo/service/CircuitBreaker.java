@@ -0,0 +1,141 @@
+package com.apidynamics.test.client_demo.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Failure-rate circuit breaker of one upstream endpoint, lock-free.
+ * CLOSED counts calls and failures in fixed time windows and opens when the failure rate of a window
+ * with enough calls reaches the threshold. OPEN rejects calls until the open duration elapsed, then lets
+ * a single probe through (HALF_OPEN): its success closes the circuit, its failure opens it again.
+ * The probe is told apart by the token {@link #tryAcquire()} gives it, results of other calls never resolve HALF_OPEN.
+ * State, open time and probe token change together in one compare-and-set.
+ */
+final class CircuitBreaker {
+
+    enum State {CLOSED, HALF_OPEN, OPEN}
+
+    // permits of tryAcquire, probes get a positive token
+    static final long REJECTED = -1;
+    static final long PERMITTED = 0;
+
+    private final double failureRateThreshold;
+    private final int minCalls;
+    private final long windowNanos;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private final BiConsumer<State, State> onTransition;
+
+    private final AtomicReference<Status> status = new AtomicReference<>(new Status(State.CLOSED, 0, 0));
+    private final AtomicReference<Window> window;
+    private final AtomicLong probes = new AtomicLong();
+
+    /**
+     * @param onTransition - called with the previous and the new state, once per transition
+     */
+    CircuitBreaker(double failureRateThreshold, int minCalls, long windowNanos, long openNanos, LongSupplier nanoClock, BiConsumer<State, State> onTransition) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.minCalls = minCalls;
+        this.windowNanos = windowNanos;
+        this.openNanos = openNanos;
+        this.nanoClock = nanoClock;
+        this.onTransition = onTransition;
+        this.window = new AtomicReference<>(new Window(nanoClock.getAsLong()));
+    }
+
+    State state() {
+        return status.get().state();
+    }
+
+    /**
+     * @return - {@link #REJECTED}, {@link #PERMITTED} or the token of the probe, a call that is not rejected
+     * must report {@link #onResult(long, boolean)} with it
+     */
+    long tryAcquire() {
+        Status current = status.get();
+        if (current.state() == State.CLOSED) {
+            return PERMITTED;
+        }
+        if (current.state() == State.OPEN && nanoClock.getAsLong() - current.openedAtNanos() >= openNanos) {
+            long probe = probes.incrementAndGet();
+            // the caller winning this transition is the probe
+            if (transition(current, new Status(State.HALF_OPEN, current.openedAtNanos(), probe))) {
+                return probe;
+            }
+        }
+        return REJECTED;
+    }
+
+    /**
+     * @return - nanos until an open circuit lets a probe through, 0 when not open
+     */
+    long remainingOpenNanos() {
+        Status current = status.get();
+        return current.state() == State.OPEN ? Math.max(0, openNanos - (nanoClock.getAsLong() - current.openedAtNanos())) : 0;
+    }
+
+    /**
+     * @param permit - what {@link #tryAcquire()} returned for the call
+     * @param success - false for a failed call
+     */
+    void onResult(long permit, boolean success) {
+        Status current = status.get();
+        if (current.state() == State.HALF_OPEN) {
+            // late results of calls permitted before the circuit opened do not decide for the probe
+            if (permit == current.probe()) {
+                if (success) {
+                    window.set(new Window(nanoClock.getAsLong()));
+                    transition(current, new Status(State.CLOSED, 0, 0));
+                } else {
+                    transition(current, new Status(State.OPEN, nanoClock.getAsLong(), 0));
+                }
+            }
+            return;
+        }
+        if (current.state() == State.OPEN) {
+            // late result of a call permitted before the circuit opened
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        Window currentWindow = window.get();
+        if (now - currentWindow.startNanos >= windowNanos) {
+            // one caller rolls the window, the others count in whichever window they see
+            Window next = new Window(now);
+            currentWindow = window.compareAndSet(currentWindow, next) ? next : window.get();
+        }
+        int calls = currentWindow.calls.incrementAndGet();
+        int failures = success ? currentWindow.failures.get() : currentWindow.failures.incrementAndGet();
+        if (!success && calls >= minCalls && failures >= failureRateThreshold * calls) {
+            // a caller losing the race leaves the open time of the winner untouched
+            transition(current, new Status(State.OPEN, now, 0));
+        }
+    }
+
+    private boolean transition(Status from, Status to) {
+        if (status.compareAndSet(from, to)) {
+            onTransition.accept(from.state(), to.state());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param openedAtNanos - when the circuit last opened
+     * @param probe - token of the HALF_OPEN probe
+     */
+    private record Status(State state, long openedAtNanos, long probe) {
+    }
+
+    private static final class Window {
+        private final long startNanos;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private Window(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+}
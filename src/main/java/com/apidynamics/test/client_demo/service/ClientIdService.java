@@ -1,6 +1,7 @@
 package com.apidynamics.test.client_demo.service;
 
 import com.apidynamics.test.client_demo.entity.ApiClient;
+import com.apidynamics.test.client_demo.model.ClientCredential;
 import com.apidynamics.test.client_demo.repository.ApiClientRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,12 +9,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This service is used to provide current client id "public key" to the RestClient
  * Since this is a demo client, this is a way to provide a convenient client id
- * depending on the testing the user is performing
+ * depending on the testing the user is performing.
+ * The client id is kept in a lock-free near-cache in front of the repository,
+ * refreshed after CLIENT_ID_CACHE_TTL_MS and updated on save. An expired client id is reloaded by one reader
+ * while the others keep being served the expired one, a reload never overwrites a newer save.
+ * It is the default client, requests may select another one from the {@link ClientRegistry}.
  */
 @Service
 public class ClientIdService {
@@ -22,14 +32,74 @@ public class ClientIdService {
     @Value("${API_DYNAMICS_CLIENT_ID}")
     private String apiDynamicsClientId;
 
+    // how long a cached client id is served before the repository is read again (external DB edits)
+    @Value("${CLIENT_ID_CACHE_TTL_MS:5000}")
+    private long clientIdCacheTtlMs;
+
     private final ApiClientRepository apiClientRepository;
 
+    private final AtomicReference<CachedClientId> cachedClientId = new AtomicReference<>();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
     @Autowired
     public ClientIdService(ApiClientRepository apiClientRepository) {
         this.apiClientRepository = apiClientRepository;
     }
 
+    /**
+     * Current client id, served from the near-cache while it is fresh
+     * @return - client id "public key"
+     */
     public String getClientId() {
+        return getClient().publicKey();
+    }
+
+    /**
+     * Current client with its decoded key material, served from the near-cache while it is fresh
+     * @return - default client
+     */
+    public ClientCredential getClient() {
+        CachedClientId cached = cachedClientId.get();
+        // an expired client id is served while another reader reloads it
+        if (cached != null && (cached.isFresh(System.nanoTime()) || !cached.refreshing().compareAndSet(false, true))) {
+            cacheHits.increment();
+            return cached.client();
+        }
+        cacheMisses.increment();
+        try {
+            return loadClient(cached);
+        } finally {
+            if (cached != null) {
+                // lets the next reader retry when the reload failed
+                cached.refreshing().set(false);
+            }
+        }
+    }
+
+    /**
+     * Stores the client id and updates the near-cache (write-through)
+     * @param clientId - client id "public key"
+     */
+    public void saveClientId(String clientId) {
+        apiClientRepository.save(ApiClient.builder().id(1).publicKey(clientId).build());
+        cachedClientId.set(cachedClientId(cachedClientId.get(), clientId));
+        LOG.info("Client id saved: {}", clientId);
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * @param expected - cached client id being replaced, null on the first load
+     * @return - the loaded client, or the newer one saved while it was loading
+     */
+    private ClientCredential loadClient(CachedClientId expected) {
         Optional<ApiClient> apiClient = apiClientRepository.findById(1);
         String clientId = null;
         if (apiClient.isPresent()) {
@@ -38,6 +108,30 @@ public class ClientIdService {
             clientId = apiDynamicsClientId;
         }
         LOG.info("Client id: {}", clientId);
-        return clientId;
+        CachedClientId loaded = cachedClientId(expected, clientId);
+        if (cachedClientId.compareAndSet(expected, loaded)) {
+            return loaded.client();
+        }
+        // saved (or reloaded) meanwhile, the repository may have been read before that save
+        return cachedClientId.get().client();
+    }
+
+    /**
+     * Keeps the credential of an unchanged client id, with its decoded key and pooled Macs
+     */
+    private CachedClientId cachedClientId(CachedClientId current, String clientId) {
+        ClientCredential client = current != null && Objects.equals(current.client().publicKey(), clientId)
+                ? current.client()
+                : ClientCredential.of(1, clientId);
+        return new CachedClientId(client, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(clientIdCacheTtlMs), new AtomicBoolean());
+    }
+
+    /**
+     * @param refreshing - set by the reader reloading the expired client id
+     */
+    private record CachedClientId(ClientCredential client, long expiresAtNanos, AtomicBoolean refreshing) {
+        boolean isFresh(long nowNanos) {
+            return nowNanos - expiresAtNanos < 0;
+        }
     }
 }
@@ -0,0 +1,246 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.entity.ApiClient;
+import com.apidynamics.test.client_demo.model.ClientCredential;
+import com.apidynamics.test.client_demo.repository.ApiClientRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory registry of the API clients one instance fronts, selected per request.
+ * Clients are bulk-loaded from {@link ApiClientRepository} and, when CLIENT_REGISTRY_FILE is set, from a file of
+ * "id,publicKey" lines (file entries win over repository rows with the same id). TOTP key bytes are decoded at load.
+ * A reload builds a complete new index and swaps it in one volatile write, readers never wait and always see
+ * either the old or the new registry, never a mix.
+ */
+@Component
+public class ClientRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClientRegistry.class);
+
+    @Value("${API_DYNAMICS_CLIENT_ID}")
+    private String apiDynamicsClientId;
+
+    @Value("${CLIENT_REGISTRY_FILE:}")
+    private String registryFile;
+
+    private final ApiClientRepository apiClientRepository;
+
+    private volatile Index index = Index.of(new ClientCredential[0]);
+    private volatile long loadedAtMillis;
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public ClientRegistry(ApiClientRepository apiClientRepository) {
+        this.apiClientRepository = apiClientRepository;
+    }
+
+    @PostConstruct
+    void load() {
+        reload();
+    }
+
+    /**
+     * @param clientRef - client public key, or client id
+     * @return - the client, or null if it is not registered
+     */
+    public ClientCredential find(String clientRef) {
+        lookups.increment();
+        Index current = index;
+        ClientCredential client = current.byPublicKey(clientRef);
+        if (client == null && isId(clientRef)) {
+            client = current.byId(Integer.parseInt(clientRef));
+        }
+        if (client == null) {
+            misses.increment();
+        }
+        return client;
+    }
+
+    /**
+     * @param clientRef - client public key, or client id
+     * @return - the client
+     * @throws UnknownClientException - when it is not registered
+     */
+    public ClientCredential get(String clientRef) {
+        ClientCredential client = find(clientRef);
+        if (client == null) {
+            throw new UnknownClientException(clientRef);
+        }
+        return client;
+    }
+
+    /**
+     * Reloads every client from the repository and the registry file, then swaps the index atomically
+     * @return - number of clients loaded
+     */
+    public synchronized int reload() {
+        long start = System.nanoTime();
+        Map<Integer, ClientCredential> clients = new LinkedHashMap<>();
+        for (ApiClient apiClient : apiClientRepository.findAll()) {
+            if (apiClient.getId() != null && apiClient.getPublicKey() != null) {
+                clients.put(apiClient.getId(), ClientCredential.of(apiClient.getId(), apiClient.getPublicKey()));
+            }
+        }
+        // same fallback as ClientIdService, so the default client can be selected too
+        clients.putIfAbsent(1, ClientCredential.of(1, apiDynamicsClientId));
+        if (!registryFile.isBlank()) {
+            loadFile(Path.of(registryFile), clients);
+        }
+        index = Index.of(clients.values().toArray(new ClientCredential[0]));
+        loadedAtMillis = System.currentTimeMillis();
+        reloads.increment();
+        LOG.info("Client registry loaded {} client(s) in {} ms", clients.size(), (System.nanoTime() - start) / 1_000_000);
+        return clients.size();
+    }
+
+    /**
+     * @return - registry size, estimated footprint, reloads and lookups
+     */
+    public Map<String, Object> getStats() {
+        Index current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("clients", current.size());
+        stats.put("estimatedBytes", current.estimatedBytes());
+        stats.put("estimatedBytesPerClient", current.size() == 0 ? 0 : current.estimatedBytes() / current.size());
+        stats.put("loadedAtMillis", loadedAtMillis);
+        stats.put("reloads", reloads.sum());
+        stats.put("lookups", lookups.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+
+    private static void loadFile(Path file, Map<Integer, ClientCredential> clients) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int comma = line.indexOf(',');
+                if (comma <= 0 || comma == line.length() - 1 || !isId(line.substring(0, comma))) {
+                    throw new IllegalArgumentException("Invalid client registry entry at " + file + ":" + lineNumber);
+                }
+                int id = Integer.parseInt(line.substring(0, comma));
+                clients.put(id, ClientCredential.of(id, line.substring(comma + 1).strip()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read client registry file " + file, e);
+        }
+    }
+
+    private static boolean isId(String value) {
+        if (value.isEmpty() || value.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Immutable compact index: ids sorted in an int array next to their clients (binary search), and an
+     * open-addressing table of the clients by public key (no per-entry node objects, load factor at most 0.5).
+     */
+    static final class Index {
+
+        private final int[] ids;
+        private final ClientCredential[] clientsById;
+        private final ClientCredential[] clientsByPublicKey;
+
+        private Index(int[] ids, ClientCredential[] clientsById, ClientCredential[] clientsByPublicKey) {
+            this.ids = ids;
+            this.clientsById = clientsById;
+            this.clientsByPublicKey = clientsByPublicKey;
+        }
+
+        static Index of(ClientCredential[] clients) {
+            ClientCredential[] sorted = clients.clone();
+            Arrays.sort(sorted, Comparator.comparingInt(ClientCredential::id));
+            int[] ids = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                ids[i] = sorted[i].id();
+            }
+            ClientCredential[] table = new ClientCredential[Math.max(2, Integer.highestOneBit(Math.max(1, sorted.length)) << 2)];
+            int mask = table.length - 1;
+            for (ClientCredential client : sorted) {
+                int slot = spread(client.publicKey().hashCode()) & mask;
+                while (table[slot] != null && !table[slot].publicKey().equals(client.publicKey())) {
+                    slot = (slot + 1) & mask;
+                }
+                if (table[slot] != null) {
+                    LOG.warn("Client {} has the same public key as client {}, lookups by public key resolve to client {}", client.id(), table[slot].id(), table[slot].id());
+                    continue;
+                }
+                table[slot] = client;
+            }
+            return new Index(ids, sorted, table);
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        ClientCredential byId(int id) {
+            int i = Arrays.binarySearch(ids, id);
+            return i >= 0 ? clientsById[i] : null;
+        }
+
+        ClientCredential byPublicKey(String publicKey) {
+            ClientCredential[] table = clientsByPublicKey;
+            int mask = table.length - 1;
+            for (int slot = spread(publicKey.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+                ClientCredential client = table[slot];
+                if (client == null || client.publicKey().equals(publicKey)) {
+                    return client;
+                }
+            }
+        }
+
+        /**
+         * Shallow estimate with compressed oops: index arrays, credential objects, public key strings and key material,
+         * including the Mac slots currently pooled for each key
+         */
+        long estimatedBytes() {
+            long bytes = align(16 + 4L * ids.length) + align(16 + 4L * clientsById.length) + align(16 + 4L * clientsByPublicKey.length);
+            for (ClientCredential client : clientsById) {
+                // credential (header, int, 2 refs) + String (header, hash, coder, ref) + its Latin-1 bytes + key and its bytes + pooled Macs
+                bytes += 24 + 24 + align(16 + client.publicKey().length()) + TOTPEngine.Key.SHALLOW_BYTES + align(16 + client.publicKey().length())
+                        + client.totpKey().pooledBytes();
+            }
+            return bytes;
+        }
+
+        private static long align(long bytes) {
+            return (bytes + 7) & ~7L;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -1,26 +1,25 @@
 package com.apidynamics.test.client_demo.service;
 
+import com.apidynamics.test.client_demo.model.AdaptiveAuthResponseParser;
+import com.apidynamics.test.client_demo.model.TimestampResponse;
+import com.apidynamics.test.client_demo.model.TotpValidationResponse;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.data.util.Pair;
 import org.springframework.http.*;
-import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.DefaultResponseErrorHandler;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.IOException;
+import java.net.URI;
 import java.util.Collections;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class DemoServerApiService {
@@ -30,37 +29,42 @@ public class DemoServerApiService {
     @Value("${DEMO_SERVER_BASE_URL:http://localhost:8080}")
     private String demoServerBaseURL;
 
+    @Value("${HTTPBIN_BASE_URL:https://httpbin.org}")
+    private String httpBinBaseURL;
+
     private final ClientIdService clientIdService;
-    private final RestTemplate demoServerRestTemplate;
+    private final DemoServerClient demoServerClient;
+    private final HeaderForwardingPolicy headerForwardingPolicy;
 
     @Autowired
-    public DemoServerApiService(@Qualifier("demoServerRestTemplate") RestTemplate demoServerRestTemplate, ClientIdService clientIdService) {
-        this.demoServerRestTemplate = demoServerRestTemplate;
+    public DemoServerApiService(DemoServerClient demoServerClient, ClientIdService clientIdService, HeaderForwardingPolicy headerForwardingPolicy) {
+        this.demoServerClient = demoServerClient;
         this.clientIdService = clientIdService;
+        this.headerForwardingPolicy = headerForwardingPolicy;
     }
 
     /**
-     * Get request headers from current request context
+     * Get forwarded request headers from current request context (package visible for benchmarks)
      * @return - HttpHeaders object
      */
-    private HttpHeaders getRequestHeaders() {
+    HttpHeaders getRequestHeaders() {
+        HttpHeaders httpHeaders = headerForwardingPolicy.newHeaders(1);
+        copyRequestHeaders(httpHeaders);
+        return httpHeaders;
+    }
+
+    /**
+     * Copies the headers allowed by the forwarding policy from current request context
+     * @param httpHeaders - upstream request headers
+     */
+    private void copyRequestHeaders(HttpHeaders httpHeaders) {
         ServletRequestAttributes requestAttributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
         HttpServletRequest request = requestAttributes.getRequest();
 
-//        request.getHeaderNames().asIterator().forEachRemaining(header -> LOG.debug("request.getHeader({}) ======> {}", header, request.getHeader(header)));
-
-        HttpHeaders httpHeaders = Collections.list(request.getHeaderNames())
-                .stream()
-                .collect(Collectors.toMap(
-                        Function.identity(),
-                        h -> Collections.list(request.getHeaders(h)),
-                        (oldValue, newValue) -> newValue,
-                        HttpHeaders::new
-                ));
+        headerForwardingPolicy.copy(request, httpHeaders);
 
         // add remote address header since it is not coming explicitly within list of headers
         httpHeaders.add("Remote_Addr", request.getRemoteAddr());
-        return httpHeaders;
     }
 
     /**
@@ -69,30 +73,46 @@ public class DemoServerApiService {
      * @param totp - Self or Server generated TOTP token
      * @return - Demo server response
      */
-    public Pair<HttpStatusCode, Map<String, Object>> validateClientTotp(String transactionId, String totp) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-        headers.add("X-API-Dynamics-Client-Id", clientIdService.getClientId());
-        HttpEntity<?> entity = new HttpEntity<>(headers);
-        Map<String, String> uriVariables = Map.of("transactionId", transactionId, "totp", totp);
-        ParameterizedTypeReference<Map<String, Object>> responseType = new ParameterizedTypeReference<>() {};
-        ResponseEntity<Map<String, Object>> response = demoServerRestTemplate.exchange(demoServerBaseURL + "/adaptiveAuthentication/validateClientTotp?tid={transactionId}&totp={totp}", HttpMethod.GET, entity, responseType, uriVariables);
-        return Pair.of(response.getStatusCode(), response.getBody());
+    public Pair<HttpStatusCode, TotpValidationResponse> validateClientTotp(String transactionId, String totp) {
+        return demoServerClient.exchange(validateClientTotpCall(transactionId, totp, clientIdService.getClientId()), AdaptiveAuthResponseParser::totpValidation);
+    }
+
+    /**
+     * Async variant of {@link #validateClientTotp(String, String)}
+     * @param transactionId - Current adaptive transaction id
+     * @param totp - Self or Server generated TOTP token
+     * @return - Demo server response future
+     */
+    public CompletableFuture<Pair<HttpStatusCode, TotpValidationResponse>> validateClientTotpAsync(String transactionId, String totp) {
+        return validateClientTotpAsync(transactionId, totp, clientIdService.getClientId());
+    }
+
+    /**
+     * Same as {@link #validateClientTotpAsync(String, String)} for a given client
+     * @param transactionId - Current adaptive transaction id
+     * @param totp - Self or Server generated TOTP token
+     * @param clientId - client id "public key"
+     * @return - Demo server response future
+     */
+    public CompletableFuture<Pair<HttpStatusCode, TotpValidationResponse>> validateClientTotpAsync(String transactionId, String totp, String clientId) {
+        return demoServerClient.exchangeAsync(validateClientTotpCall(transactionId, totp, clientId), AdaptiveAuthResponseParser::totpValidation);
     }
 
     /**
      * Sample API call to get current UTC timestamp from demo server
      * @return - Demo server response
      */
-    public Pair<HttpStatusCode, Map<String, Object>> getTimestamp() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-        headers.add("X-API-Dynamics-Client-Id", clientIdService.getClientId());
-        headers.addAll(getRequestHeaders());
-        HttpEntity<?> entity = new HttpEntity<>(headers);
-        ParameterizedTypeReference<Map<String, Object>> responseType = new ParameterizedTypeReference<>() {};
-        ResponseEntity<Map<String, Object>> response = demoServerRestTemplate.exchange(demoServerBaseURL + "/api/timestamp", HttpMethod.GET, entity, responseType);
-        return Pair.of(response.getStatusCode(), response.getBody());
+    public Pair<HttpStatusCode, TimestampResponse> getTimestamp() {
+        return demoServerClient.exchange(timestampCall(), AdaptiveAuthResponseParser::timestamp);
+    }
+
+    /**
+     * Async variant of {@link #getTimestamp()}. Must be called on the request thread,
+     * inbound headers are captured before the call leaves it
+     * @return - Demo server response future
+     */
+    public CompletableFuture<Pair<HttpStatusCode, TimestampResponse>> getTimestampAsync() {
+        return demoServerClient.exchangeAsync(timestampCall(), AdaptiveAuthResponseParser::timestamp);
     }
 
     /**
@@ -101,22 +121,57 @@ public class DemoServerApiService {
      * @return - httpbin raw response
      */
     public Pair<HttpStatusCode, Map<String, Object>> httpBin(String test) {
-        RestTemplate restTemplate = new RestTemplate();
+        return demoServerClient.exchange(httpBinCall(test), DemoServerClient.MAP_BODY);
+    }
+
+    /**
+     * Async variant of {@link #httpBin(String)}
+     * @param test - which endpoint of httpbin you want to hit?
+     * @return - httpbin raw response future
+     */
+    public CompletableFuture<Pair<HttpStatusCode, Map<String, Object>>> httpBinAsync(String test) {
+        return demoServerClient.exchangeAsync(httpBinCall(test), DemoServerClient.MAP_BODY);
+    }
+
+    /**
+     * Streaming variant of {@link #httpBin(String)}, the httpbin response is relayed to the client as is
+     * @param test - which endpoint of httpbin you want to hit?
+     * @param response - response sent to the client
+     * @return - httpbin status and body bytes relayed
+     */
+    public Pair<HttpStatusCode, Long> httpBinStream(String test, HttpServletResponse response) {
+        return demoServerClient.stream(httpBinCall(test), response);
+    }
+
+    private UpstreamCall validateClientTotpCall(String transactionId, String totp, String clientId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        headers.add("X-API-Dynamics-Client-Id", clientId);
+        Map<String, String> uriVariables = Map.of("transactionId", transactionId, "totp", totp);
+        URI uri = UriComponentsBuilder.fromUriString(demoServerBaseURL + "/adaptiveAuthentication/validateClientTotp?tid={transactionId}&totp={totp}")
+                .buildAndExpand(uriVariables).encode().toUri();
+        return new UpstreamCall("validateClientTotp", uri, headers);
+    }
+
+    UpstreamCall timestampCall() {
+        return timestampCall(clientIdService.getClientId());
+    }
+
+    UpstreamCall timestampCall(String clientId) {
+        HttpHeaders headers = headerForwardingPolicy.newHeaders(3);
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        headers.add("X-API-Dynamics-Client-Id", clientId);
+        copyRequestHeaders(headers);
+        URI uri = UriComponentsBuilder.fromUriString(demoServerBaseURL + "/api/timestamp").build().toUri();
+        return new UpstreamCall("timestamp", uri, headers);
+    }
+
+    private UpstreamCall httpBinCall(String test) {
         HttpHeaders headers = new HttpHeaders();
         headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
         headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<?> entity = new HttpEntity<>(headers);
-
-        restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
-            @Override
-            public boolean hasError(ClientHttpResponse response) throws IOException {
-                return false;
-            }
-        });
-
-        ParameterizedTypeReference<Map<String, Object>> responseType = new ParameterizedTypeReference<>() {};
-        ResponseEntity<Map<String, Object>> response = restTemplate.exchange("https://httpbin.org/{test}", HttpMethod.GET, entity, responseType, test);
-        return Pair.of(response.getStatusCode(), response.getBody());
+        URI uri = UriComponentsBuilder.fromUriString(httpBinBaseURL + "/{test}").buildAndExpand(test).encode().toUri();
+        return new UpstreamCall("httpbin", uri, headers);
     }
 
 }
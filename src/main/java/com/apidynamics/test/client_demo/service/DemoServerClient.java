@@ -0,0 +1,261 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.jfr.UpstreamCallEvent;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import io.micrometer.observation.Observation;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.util.Pair;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Executes {@link UpstreamCall}s, either blocking through demoServerRestTemplate or
+ * asynchronously: through demoServerAsyncHttpClient when the jdk client is selected, otherwise through
+ * demoServerRestTemplate on a virtual thread of demoServerAsyncExecutor. Both return the status and the body read by a
+ * {@link ResponseBodyParser}; the raw body is kept for error responses and when debug logging is on.
+ * Identical concurrent calls may be coalesced by {@link UpstreamCallCoalescer}, each call sent goes through
+ * {@link UpstreamResilience} (circuit breaker, adaptive timeout, hedging).
+ * Bodies that are only relayed are streamed to the client through demoServerStreamingRestTemplate instead.
+ * Each exchange sent is also recorded as a JFR {@link UpstreamCallEvent} when the event is enabled.
+ */
+@Component
+public class DemoServerClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DemoServerClient.class);
+
+    // built explicitly rather than from a TypeReference subclass, no generic signature is read reflectively (native image)
+    private static final JavaType MAP_JSON = TypeFactory.defaultInstance().constructMapType(LinkedHashMap.class, String.class, Object.class);
+
+    /**
+     * Reads the whole body into a Map, for payloads that are displayed as is (httpbin)
+     */
+    public static final ResponseBodyParser<Map<String, Object>> MAP_BODY = (parser, rawBody) -> parser.nextToken() == null ? null : parser.getCodec().readValue(parser, MAP_JSON);
+
+    /**
+     * Raw body kept for an error response at INFO, the rest is dropped
+     */
+    private static final int MAX_ERROR_BODY_CHARS = 2048;
+
+    // headers java.net.http manages itself and refuses to set
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final RestTemplate demoServerRestTemplate;
+    private final RestTemplate demoServerStreamingRestTemplate;
+    // null unless DEMO_SERVER_HTTP_CLIENT=jdk
+    private final HttpClient demoServerAsyncHttpClient;
+    private final Executor demoServerAsyncExecutor;
+    private final ObjectMapper objectMapper;
+    private final UpstreamCallCoalescer upstreamCallCoalescer;
+    private final AdaptiveAuthObservations observations;
+    private final UpstreamResilience upstreamResilience;
+    private final UpstreamPassthrough upstreamPassthrough;
+
+    @Autowired
+    public DemoServerClient(@Qualifier("demoServerRestTemplate") RestTemplate demoServerRestTemplate,
+                            @Qualifier("demoServerStreamingRestTemplate") RestTemplate demoServerStreamingRestTemplate,
+                            @Qualifier("demoServerAsyncHttpClient") ObjectProvider<HttpClient> demoServerAsyncHttpClient,
+                            @Qualifier("demoServerAsyncExecutor") Executor demoServerAsyncExecutor,
+                            ObjectMapper objectMapper,
+                            UpstreamCallCoalescer upstreamCallCoalescer,
+                            AdaptiveAuthObservations observations,
+                            UpstreamResilience upstreamResilience,
+                            UpstreamPassthrough upstreamPassthrough) {
+        this.demoServerRestTemplate = demoServerRestTemplate;
+        this.demoServerStreamingRestTemplate = demoServerStreamingRestTemplate;
+        this.demoServerAsyncHttpClient = demoServerAsyncHttpClient.getIfAvailable();
+        this.demoServerAsyncExecutor = demoServerAsyncExecutor;
+        this.objectMapper = objectMapper;
+        this.upstreamCallCoalescer = upstreamCallCoalescer;
+        this.observations = observations;
+        this.upstreamResilience = upstreamResilience;
+        this.upstreamPassthrough = upstreamPassthrough;
+    }
+
+    /**
+     * Blocking exchange, holds the calling thread until the response is read
+     * @param call - upstream call
+     * @param bodyParser - reads the response body
+     * @return - status and response body
+     */
+    public <T> Pair<HttpStatusCode, T> exchange(UpstreamCall call, ResponseBodyParser<T> bodyParser) {
+        return upstreamCallCoalescer.executeBlocking(call, "call",
+                () -> upstreamResilience.execute(call, timeout -> doExchange(call, bodyParser)));
+    }
+
+    /**
+     * Non-blocking exchange, no thread is held while waiting for the upstream server
+     * @param call - upstream call
+     * @param bodyParser - reads the response body
+     * @return - future of status and response body
+     */
+    public <T> CompletableFuture<Pair<HttpStatusCode, T>> exchangeAsync(UpstreamCall call, ResponseBodyParser<T> bodyParser) {
+        return upstreamCallCoalescer.execute(call, "call",
+                () -> upstreamResilience.executeAsync(call, timeout -> doExchangeAsync(call, bodyParser, timeout)));
+    }
+
+    /**
+     * Blocking passthrough, status, selected headers and body of the upstream response are copied to the target
+     * while they are read. Never coalesced nor hedged, the body can only be consumed once.
+     * The adaptive timeout only bounds the response head, the body is copied with the static response timeout
+     * @param call - upstream call
+     * @param target - response sent to the client, committed once the body starts flowing
+     * @return - status and body bytes copied
+     */
+    public Pair<HttpStatusCode, Long> stream(UpstreamCall call, HttpServletResponse target) {
+        return upstreamResilience.execute(call, timeout -> {
+            UpstreamHeadDeadline headDeadline = new UpstreamHeadDeadline(timeout);
+            return headDeadline.run(() -> doStream(call, target, headDeadline));
+        });
+    }
+
+    /**
+     * The response timeout of the pooled client is set from {@link UpstreamRequestTimeout}
+     */
+    private <T> Pair<HttpStatusCode, T> doExchange(UpstreamCall call, ResponseBodyParser<T> bodyParser) {
+        // coalesced callers share this call, so it is observed once
+        Observation observation = observations.upstreamCallStarted(call);
+        UpstreamCallEvent event = UpstreamCallEvent.start(call.endpoint(), call.uri());
+        HttpStatusCode[] status = new HttpStatusCode[1];
+        long[] bytes = {-1};
+        try {
+            Pair<HttpStatusCode, T> response = demoServerRestTemplate.execute(call.uri(), HttpMethod.GET,
+                    request -> request.getHeaders().addAll(call.headers()),
+                    clientResponse -> {
+                        status[0] = clientResponse.getStatusCode();
+                        if (!event.isEnabled()) {
+                            return Pair.of(status[0], readBody(call, status[0], clientResponse.getBody(), bodyParser));
+                        }
+                        // the body is sized only while recording, it is buffered in memory already
+                        byte[] body = clientResponse.getBody().readAllBytes();
+                        bytes[0] = body.length;
+                        return Pair.of(status[0], readBody(call, status[0], body, bodyParser));
+                    });
+            observations.upstreamCallCompleted(observation, status[0], null);
+            event.complete(status[0], bytes[0], null);
+            return response;
+        } catch (RuntimeException e) {
+            observations.upstreamCallCompleted(observation, status[0], e);
+            event.complete(status[0], bytes[0], e);
+            throw e;
+        }
+    }
+
+    private Pair<HttpStatusCode, Long> doStream(UpstreamCall call, HttpServletResponse target, UpstreamHeadDeadline headDeadline) {
+        Observation observation = observations.upstreamCallStarted(call);
+        UpstreamCallEvent event = UpstreamCallEvent.start(call.endpoint(), call.uri());
+        HttpStatusCode[] status = new HttpStatusCode[1];
+        try {
+            Pair<HttpStatusCode, Long> response = demoServerStreamingRestTemplate.execute(call.uri(), HttpMethod.GET,
+                    request -> request.getHeaders().addAll(call.headers()),
+                    clientResponse -> {
+                        if (!headDeadline.headReceived()) {
+                            throw headTimeout(call, headDeadline);
+                        }
+                        status[0] = clientResponse.getStatusCode();
+                        return Pair.of(status[0], upstreamPassthrough.copy(clientResponse, target));
+                    });
+            observations.upstreamCallCompleted(observation, status[0], null);
+            event.complete(status[0], response.getSecond(), null);
+            return response;
+        } catch (RuntimeException e) {
+            RuntimeException failure = headDeadline.isExpired() && status[0] == null
+                    ? new ResourceAccessException(e.getMessage(), headTimeout(call, headDeadline)) : e;
+            observations.upstreamCallCompleted(observation, status[0], failure);
+            event.complete(status[0], -1, failure);
+            throw failure;
+        }
+    }
+
+    private static SocketTimeoutException headTimeout(UpstreamCall call, UpstreamHeadDeadline headDeadline) {
+        return new SocketTimeoutException("No response head from " + call.endpoint() + " within " + headDeadline.timeout().toMillis() + " ms");
+    }
+
+    private <T> CompletableFuture<Pair<HttpStatusCode, T>> doExchangeAsync(UpstreamCall call, ResponseBodyParser<T> bodyParser, Duration timeout) {
+        if (demoServerAsyncHttpClient == null) {
+            // the response timeout reaches the pooled client through UpstreamRequestTimeout, set on the virtual thread
+            return CompletableFuture.supplyAsync(() -> UpstreamRequestTimeout.with(timeout, () -> doExchange(call, bodyParser)), demoServerAsyncExecutor);
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(call.uri())
+                .timeout(timeout)
+                .GET();
+        call.headers().forEach((name, values) -> {
+            if (!RESTRICTED_HEADERS.contains(name.toLowerCase())) {
+                values.forEach(value -> request.header(name, value));
+            }
+        });
+        Observation observation = observations.upstreamCallStarted(call);
+        UpstreamCallEvent event = UpstreamCallEvent.start(call.endpoint(), call.uri());
+        HttpStatusCode[] status = new HttpStatusCode[1];
+        long[] bytes = {-1};
+        return demoServerAsyncHttpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    status[0] = HttpStatusCode.valueOf(response.statusCode());
+                    bytes[0] = response.body().length;
+                    return Pair.of(status[0], readBody(call, status[0], response.body(), bodyParser));
+                })
+                .whenComplete((response, error) -> {
+                    observations.upstreamCallCompleted(observation, status[0], error);
+                    event.complete(status[0], bytes[0], error);
+                });
+    }
+
+    private <T> T readBody(UpstreamCall call, HttpStatusCode status, InputStream body, ResponseBodyParser<T> bodyParser) throws IOException {
+        if (keepsRawBody(status)) {
+            return readBody(call, status, body.readAllBytes(), bodyParser);
+        }
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            return bodyParser.parse(parser, null);
+        }
+    }
+
+    private <T> T readBody(UpstreamCall call, HttpStatusCode status, byte[] body, ResponseBodyParser<T> bodyParser) {
+        String rawBody = keepsRawBody(status) ? rawBody(body) : null;
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            return bodyParser.parse(parser, rawBody);
+        } catch (IOException e) {
+            throw new RestClientException("Could not read " + call.endpoint() + " response body", e);
+        }
+    }
+
+    /**
+     * The raw body of an error response is the only error detail when the server sends no error field,
+     * so it is kept whatever the log level
+     */
+    private static boolean keepsRawBody(HttpStatusCode status) {
+        return LOG.isDebugEnabled() || !status.is2xxSuccessful();
+    }
+
+    private static String rawBody(byte[] body) {
+        String rawBody = new String(body, StandardCharsets.UTF_8);
+        if (LOG.isDebugEnabled() || rawBody.length() <= MAX_ERROR_BODY_CHARS) {
+            return rawBody;
+        }
+        return rawBody.substring(0, MAX_ERROR_BODY_CHARS) + "...";
+    }
+}
@@ -0,0 +1,152 @@
+package com.apidynamics.test.client_demo.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which inbound request headers are forwarded to the adaptive authentication server, and under which name.
+ * Allow / deny entries are header names or prefixes ending with '*', deny wins, "*" allows everything.
+ * Hop-by-hop and transport headers are never forwarded. Decisions are compiled once per distinct
+ * header name, so copying the headers of a request is a single pass with one map lookup per header.
+ */
+@Component
+public class HeaderForwardingPolicy {
+
+    private static final Set<String> HOP_BY_HOP = Set.of("connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+            "proxy-connection", "te", "trailer", "transfer-encoding", "upgrade", "host", "content-length", "expect");
+
+    // decisions are memoized per received spelling of a header name, this bounds the memo if a client sends random names
+    private static final int MAX_DECISIONS = 1024;
+    private static final String DROP = "";
+
+    private final List<String> allowExact = new ArrayList<>();
+    private final List<String> allowPrefixes = new ArrayList<>();
+    private final List<String> denyExact = new ArrayList<>();
+    private final List<String> denyPrefixes = new ArrayList<>();
+    private final Map<String, String> renames = new HashMap<>();
+    private final boolean allowAll;
+    private final Map<String, String> decisions = new ConcurrentHashMap<>();
+
+    /**
+     * @param allow - comma separated header names or prefixes to forward, "*" for all
+     * @param deny - comma separated header names or prefixes never forwarded
+     * @param renames - comma separated "Inbound-Name:Forwarded-Name" pairs
+     */
+    public HeaderForwardingPolicy(@Value("${HEADER_FORWARDING_ALLOW:*}") String allow,
+                                  @Value("${HEADER_FORWARDING_DENY:}") String deny,
+                                  @Value("${HEADER_FORWARDING_RENAMES:}") String renames) {
+        boolean all = false;
+        for (String name : split(allow)) {
+            all |= name.equals("*");
+            addPattern(name, allowExact, allowPrefixes);
+        }
+        this.allowAll = all;
+        for (String name : split(deny)) {
+            addPattern(name, denyExact, denyPrefixes);
+        }
+        for (String rename : split(renames)) {
+            int colon = rename.indexOf(':');
+            if (colon <= 0 || colon == rename.length() - 1) {
+                throw new IllegalArgumentException("Invalid HEADER_FORWARDING_RENAMES entry : " + rename);
+            }
+            this.renames.put(rename.substring(0, colon).trim().toLowerCase(Locale.ROOT), rename.substring(colon + 1).trim());
+        }
+    }
+
+    /**
+     * @param expectedHeaders - number of headers that will be added besides the forwarded ones
+     * @return - an empty case-insensitive HttpHeaders sized for a typical forwarded request
+     */
+    public HttpHeaders newHeaders(int expectedHeaders) {
+        int size = (allowAll ? 16 : allowExact.size() + allowPrefixes.size() * 2) + expectedHeaders;
+        return new HttpHeaders(CollectionUtils.toMultiValueMap(new LinkedCaseInsensitiveMap<>(size, Locale.ENGLISH)));
+    }
+
+    /**
+     * Copies the forwarded headers of the request into the target, in one pass
+     * @param request - inbound request
+     * @param target - upstream request headers
+     */
+    public void copy(HttpServletRequest request, HttpHeaders target) {
+        Enumeration<String> names = request.getHeaderNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            String forwardedName = forwardedName(name);
+            if (!forwardedName.isEmpty()) {
+                Enumeration<String> values = request.getHeaders(name);
+                while (values.hasMoreElements()) {
+                    target.add(forwardedName, values.nextElement());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name - inbound header name
+     * @return - name used upstream, or an empty string if the header is not forwarded
+     */
+    String forwardedName(String name) {
+        String decision = decisions.get(name);
+        if (decision == null) {
+            decision = decide(name);
+            if (decisions.size() < MAX_DECISIONS) {
+                decisions.put(name, decision);
+            }
+        }
+        return decision;
+    }
+
+    private String decide(String name) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        if (HOP_BY_HOP.contains(lowerCaseName)
+                || matches(lowerCaseName, denyExact, denyPrefixes)
+                || !(allowAll || matches(lowerCaseName, allowExact, allowPrefixes))) {
+            return DROP;
+        }
+        return renames.getOrDefault(lowerCaseName, name);
+    }
+
+    private static boolean matches(String lowerCaseName, List<String> exact, List<String> prefixes) {
+        if (exact.contains(lowerCaseName)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (lowerCaseName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addPattern(String name, List<String> exact, List<String> prefixes) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        if (lowerCaseName.endsWith("*")) {
+            prefixes.add(lowerCaseName.substring(0, lowerCaseName.length() - 1));
+        } else {
+            exact.add(lowerCaseName);
+        }
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                values.add(item.trim());
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,68 @@
+package com.apidynamics.test.client_demo.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latencies of the last {@link #SIZE} calls of one endpoint. Recording is a counter increment and an array store;
+ * p95 / p99 are recomputed every {@link #RECOMPUTE_EVERY} samples by whichever thread records that sample,
+ * readers only see the last computed values.
+ */
+final class LatencyWindow {
+
+    static final int SIZE = 512;
+    static final int MIN_SAMPLES = 50;
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicBoolean computing = new AtomicBoolean();
+    private volatile long p95Nanos = -1;
+    private volatile long p99Nanos = -1;
+
+    void record(long nanos) {
+        long recorded = count.getAndIncrement() + 1;
+        samples.set((int) ((recorded - 1) % SIZE), nanos);
+        if (recorded == MIN_SAMPLES || (recorded > MIN_SAMPLES && recorded % RECOMPUTE_EVERY == 0)) {
+            recompute();
+        }
+    }
+
+    /**
+     * @return - p95 latency, -1 until {@link #MIN_SAMPLES} calls were recorded
+     */
+    long p95Nanos() {
+        return p95Nanos;
+    }
+
+    /**
+     * @return - p99 latency, -1 until {@link #MIN_SAMPLES} calls were recorded
+     */
+    long p99Nanos() {
+        return p99Nanos;
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    private void recompute() {
+        if (!computing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int size = (int) Math.min(count.get(), SIZE);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.ceil(size * 0.95) - 1];
+            p99Nanos = sorted[(int) Math.ceil(size * 0.99) - 1];
+        } finally {
+            computing.set(false);
+        }
+    }
+}
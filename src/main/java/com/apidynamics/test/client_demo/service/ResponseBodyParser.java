@@ -0,0 +1,20 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Reads an upstream response body from a streaming JSON parser
+ * @param <T> - response type
+ */
+@FunctionalInterface
+public interface ResponseBodyParser<T> {
+
+    /**
+     * @param parser - parser positioned before the first token, which is null for an empty body
+     * @param rawBody - raw body, only provided when debug logging is on
+     * @return - the parsed response
+     */
+    T parse(JsonParser parser, String rawBody) throws IOException;
+}
@@ -0,0 +1,184 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.model.TotpBatchItem;
+import com.apidynamics.test.client_demo.model.TotpBatchResult;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bulk TOTP generation and validation (pre-checking tokens for batch jobs).
+ * Items are split in chunks computed in parallel on a bounded pool of CPU threads, at most two chunks per thread
+ * are in flight per batch, and results are handed back in item order as soon as their chunk is done, so memory
+ * stays bounded however large the batch. OTPs are validated over a drift window of TOTP_DRIFT_STEPS steps on both
+ * sides of the requested step, every step of the window is compared in constant time. Items validated at the
+ * current step are checked against the {@link TOTPReplayStore} when replay protection is enabled.
+ */
+@Service
+public class TOTPBatchService implements DisposableBean {
+
+    private final TOTPEngine engine = new TOTPEngine();
+    private final int parallelism;
+    private final int chunkSize;
+    private final int maxItems;
+    private final int driftSteps;
+    private final ThreadPoolExecutor executor;
+    private final TOTPReplayStore replayStore;
+
+    /**
+     * @param parallelism - worker threads, 0 for one per available processor
+     * @param chunkSize - items computed by one task, smaller batches run on the calling thread
+     * @param maxItems - items accepted in one batch
+     * @param driftSteps - steps accepted before and after the requested one when validating
+     * @param replayStore - used OTPs of the current window
+     */
+    public TOTPBatchService(@Value("${TOTP_BATCH_PARALLELISM:0}") int parallelism,
+                            @Value("${TOTP_BATCH_CHUNK_SIZE:256}") int chunkSize,
+                            @Value("${TOTP_BATCH_MAX_ITEMS:100000}") int maxItems,
+                            @Value("${TOTP_DRIFT_STEPS:1}") int driftSteps,
+                            TOTPReplayStore replayStore) {
+        if (chunkSize < 1 || maxItems < 1 || driftSteps < 0) {
+            throw new IllegalArgumentException("TOTP_BATCH_CHUNK_SIZE and TOTP_BATCH_MAX_ITEMS must be positive, TOTP_DRIFT_STEPS not negative");
+        }
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.chunkSize = chunkSize;
+        this.maxItems = maxItems;
+        this.driftSteps = driftSteps;
+        this.replayStore = replayStore;
+        AtomicInteger threads = new AtomicInteger();
+        // a full queue (many concurrent batches) runs the chunk on the caller, which slows down the batch submitting it
+        this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.parallelism * 4), task -> {
+                    Thread thread = new Thread(task, "totp-batch-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Processes the items in parallel, results are passed to the sink on the calling thread, in item order
+     * @param items - items to generate or validate
+     * @param sink - result consumer
+     * @throws IllegalArgumentException - when there are more than TOTP_BATCH_MAX_ITEMS items
+     */
+    public void process(List<TotpBatchItem> items, Consumer<TotpBatchResult> sink) {
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("More than " + maxItems + " TOTP items");
+        }
+        // one step for the whole batch, items of a batch straddling a step boundary stay consistent
+        long currentStep = TOTPEngine.currentStep();
+        if (items.size() <= chunkSize) {
+            for (TotpBatchResult result : compute(items, 0, items.size(), currentStep)) {
+                sink.accept(result);
+            }
+            return;
+        }
+        ArrayDeque<Future<TotpBatchResult[]>> inFlight = new ArrayDeque<>(parallelism * 2);
+        int next = 0;
+        try {
+            while (next < items.size() || !inFlight.isEmpty()) {
+                while (next < items.size() && inFlight.size() < parallelism * 2) {
+                    int from = next;
+                    int to = Math.min(items.size(), from + chunkSize);
+                    inFlight.add(executor.submit(() -> compute(items, from, to, currentStep)));
+                    next = to;
+                }
+                for (TotpBatchResult result : await(inFlight.poll())) {
+                    sink.accept(result);
+                }
+            }
+        } finally {
+            // sink failure (e.g. client gone): do not compute what nobody will read
+            inFlight.forEach(chunk -> chunk.cancel(false));
+        }
+    }
+
+    /**
+     * @param items - items to generate or validate
+     * @return - results, in item order
+     */
+    public List<TotpBatchResult> process(List<TotpBatchItem> items) {
+        List<TotpBatchResult> results = new ArrayList<>(items.size());
+        process(items, results::add);
+        return results;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private TotpBatchResult[] compute(List<TotpBatchItem> items, int from, int to, long currentStep) {
+        TotpBatchResult[] results = new TotpBatchResult[to - from];
+        for (int i = from; i < to; i++) {
+            results[i - from] = compute(i, items.get(i), currentStep);
+        }
+        return results;
+    }
+
+    private TotpBatchResult compute(int index, TotpBatchItem item, long currentStep) {
+        if (item.key() == null || item.key().isEmpty()) {
+            return TotpBatchResult.failed(index, "key is required");
+        }
+        long step = item.step() != null ? item.step() : currentStep;
+        if (step < 0) {
+            return TotpBatchResult.failed(index, "step must be greater than or equal to zero");
+        }
+        TOTPEngine.Key key;
+        try {
+            key = engine.hexKey(item.key());
+        } catch (NumberFormatException e) {
+            return TotpBatchResult.failed(index, "key is not HEX");
+        }
+        if (item.otp() == null) {
+            return TotpBatchResult.generated(index, engine.generateString(key, step));
+        }
+        int drift = engine.validateWindow(key, step, item.otp(), driftSteps);
+        if (drift == TOTPEngine.NO_MATCH) {
+            return TotpBatchResult.validated(index, false, null);
+        }
+        // a match of a step still accepted consumes the OTP whatever the source of the step,
+        // explicit steps out of the window are checks of past or future tokens
+        if (item.step() == null || replayStore.isInWindow(step + drift)) {
+            TOTPReplayStore.Result use = replayStore.markUsed(key, step + drift, item.otp());
+            if (use != TOTPReplayStore.Result.FIRST_USE) {
+                return TotpBatchResult.rejected(index, use == TOTPReplayStore.Result.REPLAY ? "OTP already used" : "OTP not recorded : " + use);
+            }
+        }
+        return TotpBatchResult.validated(index, true, drift);
+    }
+
+    private static TotpBatchResult[] await(Future<TotpBatchResult[]> chunk) {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for TOTP batch results");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
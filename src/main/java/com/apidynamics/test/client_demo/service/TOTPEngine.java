@@ -0,0 +1,323 @@
+package com.apidynamics.test.client_demo.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HMAC-SHA1 TOTP engine (RFC 6238, 6 digits, 30 seconds step) used by {@link TOTPService}.
+ * Key material is derived once per key: kept by the {@link com.apidynamics.test.client_demo.model.ClientCredential}
+ * of registered clients, cached by key string otherwise.
+ * Every computation borrows a {@link Slot} (Mac + scratch buffers) from a small lock-free pool,
+ * so steady state generation and validation do not allocate and never block, which also keeps
+ * virtual threads from pinning their carrier.
+ */
+public final class TOTPEngine {
+
+    static final int DIGITS = 6;
+    static final long STEP_MILLIS = 30000;
+    public static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private static final String ALGORITHM = "HmacSHA1";
+    private static final int MODULO = 1000000;
+    private static final int MAX_CACHED_KEYS = 4096;
+    // per key: a Slot is ~900 bytes, more concurrent users of a key than this just create a short-lived Mac
+    private static final int MAX_POOLED_SLOTS = 4;
+    private static final int HMAC_BLOCK_BYTES = 64;
+
+    private final KeyCache hexKeys = new KeyCache();
+    private final KeyCache secretKeys = new KeyCache();
+
+    /**
+     * @param hexKey - secret credential key (HEX), same format accepted by {@link TOTPService#getOTP(String)}
+     * @return cached key material
+     */
+    public Key hexKey(final String hexKey) {
+        Key key = hexKeys.keys.get(hexKey);
+        if (key == null) {
+            key = hexKeys.cache(hexKey, new Key(hexStr2Bytes(hexKey)));
+        }
+        return key;
+    }
+
+    /**
+     * @param secret - secret credential (e.g. client public key), its UTF-8 bytes are the HMAC key
+     * @return cached key material
+     */
+    public Key secretKey(final String secret) {
+        Key key = secretKeys.keys.get(secret);
+        if (key == null) {
+            key = secretKeys.cache(secret, Key.ofSecret(secret));
+        }
+        return key;
+    }
+
+    /**
+     * @return current 30 seconds step
+     */
+    public static long currentStep() {
+        return System.currentTimeMillis() / STEP_MILLIS;
+    }
+
+    /**
+     * @param key - key material
+     * @param step - TOTP step
+     * @return the 6 digits OTP as an int
+     */
+    public int generate(final Key key, final long step) {
+        if (step < 0) {
+            throw new IllegalArgumentException("Step must be greater than or equal to zero.");
+        }
+        Slot slot = key.borrow();
+        try {
+            return slot.compute(step);
+        } finally {
+            key.release(slot);
+        }
+    }
+
+    /**
+     * @param key - key material
+     * @param step - TOTP step
+     * @return the zero padded 6 digits OTP
+     */
+    public String generateString(final Key key, final long step) {
+        int otp = generate(key, step);
+        char[] digits = new char[DIGITS];
+        for (int i = DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + otp % 10);
+            otp /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Validates the OTP against the given and the previous step
+     * @param key - key material
+     * @param step - TOTP step
+     * @param otp - OTP to validate
+     * @return valid?
+     */
+    public boolean validate(final Key key, final long step, final CharSequence otp) {
+        return matches(generate(key, step), otp) || (step > 0 && matches(generate(key, step - 1), otp));
+    }
+
+    /**
+     * Validates the OTP against every step of [step - driftSteps, step + driftSteps]. All steps of the window
+     * are computed and compared whatever matches, so the time taken does not tell which step (if any) matched.
+     * @param key - key material
+     * @param step - TOTP step
+     * @param otp - OTP to validate
+     * @param driftSteps - steps accepted before and after the given one
+     * @return offset of the matching step from the given one, {@link #NO_MATCH} if none matches
+     */
+    public int validateWindow(final Key key, final long step, final CharSequence otp, final int driftSteps) {
+        return validateWindow(key, step, otp, driftSteps, driftSteps);
+    }
+
+    /**
+     * Same as {@link #validateWindow(Key, long, CharSequence, int)} for an asymmetric window
+     * [step - stepsBefore, step + stepsAfter]
+     */
+    public int validateWindow(final Key key, final long step, final CharSequence otp, final int stepsBefore, final int stepsAfter) {
+        int match = NO_MATCH;
+        for (int offset = -stepsBefore; offset <= stepsAfter; offset++) {
+            if (step + offset < 0) {
+                continue;
+            }
+            boolean matches = matches(generate(key, step + offset), otp);
+            match = matches & match == NO_MATCH ? offset : match;
+        }
+        return match;
+    }
+
+    /**
+     * Compares an OTP with its zero padded string form without allocating and without
+     * short-circuiting on the first different digit.
+     * @param expected - expected OTP
+     * @param otp - OTP to compare
+     * @return same OTP?
+     */
+    static boolean matches(int expected, final CharSequence otp) {
+        if (otp == null || otp.length() != DIGITS) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = DIGITS - 1; i >= 0; i--) {
+            diff |= otp.charAt(i) ^ ('0' + expected % 10);
+            expected /= 10;
+        }
+        return diff == 0;
+    }
+
+    /**
+     * This method converts HEX string to Byte[].
+     * Odd length values are read as if they had a leading "0", as the former BigInteger conversion did.
+     *
+     * @param hex the HEX string
+     *
+     * @return A byte array
+     */
+    static byte[] hexStr2Bytes(final String hex) {
+        final int length = hex.length();
+        final int odd = length & 1;
+        final byte[] ret = new byte[(length + odd) / 2];
+        for (int i = 0; i < length; i++) {
+            int nibble = Character.digit(hex.charAt(i), 16);
+            if (nibble < 0) {
+                throw new NumberFormatException("Invalid HEX key character at index " + i);
+            }
+            int pos = i + odd;
+            ret[pos >> 1] |= (byte) ((pos & 1) == 0 ? nibble << 4 : nibble);
+        }
+        return ret;
+    }
+
+    /**
+     * Key material by key string. A full cache evicts its oldest entry for each new one,
+     * so keys in use are not all rebuilt at once.
+     */
+    private static final class KeyCache {
+
+        private final ConcurrentHashMap<String, Key> keys = new ConcurrentHashMap<>();
+        private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+        private Key cache(String id, Key key) {
+            Key existing = keys.putIfAbsent(id, key);
+            if (existing != null) {
+                return existing;
+            }
+            insertionOrder.offer(id);
+            while (keys.size() > MAX_CACHED_KEYS) {
+                String eldest = insertionOrder.poll();
+                if (eldest == null) {
+                    break;
+                }
+                keys.remove(eldest);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Decoded key bytes plus a pool of initialized {@link Mac} slots for that key
+     */
+    public static final class Key {
+
+        // shallow size with compressed oops: Key, SecretKeySpec, pool queue and its head node, counter (Macs are created on use)
+        static final int SHALLOW_BYTES = 24 + 24 + 24 + 24 + 16;
+        // pooled Slot measured on JDK 21 with compressed oops: Mac, HmacSHA1 state (pads, SHA-1 digest), buffers, queue node
+        static final int SLOT_BYTES = 912;
+
+        private final SecretKeySpec keySpec;
+        private final long fingerprint;
+        private final ConcurrentLinkedQueue<Slot> pool = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pooled = new AtomicInteger();
+
+        Key(final byte[] keyBytes) {
+            this.keySpec = new SecretKeySpec(keyBytes, "RAW");
+            this.fingerprint = fingerprint(keyBytes);
+        }
+
+        /**
+         * @param secret - secret credential (e.g. client public key), its UTF-8 bytes are the HMAC key
+         * @return key material, not cached
+         */
+        public static Key ofSecret(final String secret) {
+            return new Key(secret.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return 64 bits FNV-1a of the key as HMAC uses it: keys up to the block size are zero padded,
+         * so trailing zero bytes do not make another key
+         */
+        public long fingerprint() {
+            return fingerprint;
+        }
+
+        private static long fingerprint(final byte[] keyBytes) {
+            int length = keyBytes.length;
+            while (length <= HMAC_BLOCK_BYTES && length > 0 && keyBytes[length - 1] == 0) {
+                length--;
+            }
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < length; i++) {
+                hash = (hash ^ (keyBytes[i] & 0xff)) * 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        /**
+         * @return - estimated bytes of the Mac slots pooled for this key, at most {@link #MAX_POOLED_SLOTS}
+         */
+        long pooledBytes() {
+            return (long) Math.min(pooled.get(), MAX_POOLED_SLOTS) * SLOT_BYTES;
+        }
+
+        private Slot borrow() {
+            Slot slot = pool.poll();
+            if (slot == null) {
+                return new Slot(newMac(keySpec));
+            }
+            pooled.decrementAndGet();
+            return slot;
+        }
+
+        private void release(Slot slot) {
+            if (pooled.incrementAndGet() <= MAX_POOLED_SLOTS) {
+                pool.offer(slot);
+            } else {
+                pooled.decrementAndGet();
+            }
+        }
+
+        private static Mac newMac(SecretKeySpec keySpec) {
+            try {
+                final Mac hmac = Mac.getInstance(ALGORITHM);
+                hmac.init(keySpec);
+                return hmac;
+            } catch (final GeneralSecurityException gse) {
+                throw new UndeclaredThrowableException(gse);
+            }
+        }
+    }
+
+    /**
+     * Mac and reusable buffers, only ever used by one thread at a time
+     */
+    private static final class Slot {
+
+        private final Mac mac;
+        private final byte[] counter = new byte[8];
+        private final byte[] hash;
+
+        private Slot(Mac mac) {
+            this.mac = mac;
+            this.hash = new byte[mac.getMacLength()];
+        }
+
+        private int compute(long step) {
+            for (int i = counter.length - 1; i >= 0; i--) {
+                counter[i] = (byte) step;
+                step >>>= 8;
+            }
+            try {
+                mac.update(counter);
+                mac.doFinal(hash, 0);
+            } catch (final GeneralSecurityException gse) {
+                throw new UndeclaredThrowableException(gse);
+            }
+
+            // put selected bytes into result int
+            final int offset = hash[hash.length - 1] & 0xf;
+            final int binary = ((hash[offset] & 0x7f) << 24) | ((hash[offset + 1] & 0xff) << 16) | ((hash[offset + 2] & 0xff) << 8) | (hash[offset + 3] & 0xff);
+            return binary % MODULO;
+        }
+    }
+}
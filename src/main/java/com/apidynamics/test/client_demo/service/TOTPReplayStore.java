@@ -0,0 +1,263 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Replay protection for validated TOTPs: remembers the (client, step, otp) tuples already used while their step
+ * can still be accepted, so a code validates once instead of during its whole acceptance window.
+ * There is one bucket per 30 seconds step of the window [current - TOTP_DRIFT_STEPS, current + TOTP_DRIFT_STEPS],
+ * a bucket is a fixed size lock-free open-addressing table of 64 bits (client, otp) fingerprints. When a step
+ * leaves the window its bucket is dropped as a whole by the first use of the step replacing it, nothing is scanned,
+ * and the table of the new bucket is allocated once, by the thread that installed it.
+ * Memory is capped at TOTP_REPLAY_MAX_ENTRIES entries (8 bytes each, at most 75% table load), once a bucket is full
+ * further first uses of its step are reported as {@link Result#FULL}.
+ */
+@Component
+public class TOTPReplayStore {
+
+    public enum Result {
+        /** first use, recorded */
+        FIRST_USE,
+        /** already used */
+        REPLAY,
+        /** step outside the acceptance window, not recorded */
+        OUT_OF_WINDOW,
+        /** bucket of the step is full, not recorded */
+        FULL
+    }
+
+    private static final long EMPTY = 0;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final boolean enabled;
+    private final int driftSteps;
+    private final int entriesPerBucket;
+    private final int tableSize;
+    private final LongSupplier stepClock;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    private final LongAdder firstUses = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder outOfWindow = new LongAdder();
+    private final LongAdder full = new LongAdder();
+
+    /**
+     * @param enabled - protection on / off, off records nothing and reports every use as a first use
+     * @param maxEntries - entries kept over all buckets
+     * @param driftSteps - steps accepted before and after the current one
+     */
+    @Autowired
+    public TOTPReplayStore(@Value("${TOTP_REPLAY_PROTECTION_ENABLED:false}") boolean enabled,
+                           @Value("${TOTP_REPLAY_MAX_ENTRIES:1000000}") int maxEntries,
+                           @Value("${TOTP_DRIFT_STEPS:1}") int driftSteps) {
+        this(enabled, maxEntries, driftSteps, TOTPEngine::currentStep);
+    }
+
+    TOTPReplayStore(boolean enabled, int maxEntries, int driftSteps, LongSupplier stepClock) {
+        if (maxEntries < 1 || driftSteps < 0) {
+            throw new IllegalArgumentException("TOTP_REPLAY_MAX_ENTRIES must be positive, TOTP_DRIFT_STEPS not negative");
+        }
+        int bucketCount = 2 * driftSteps + 1;
+        this.enabled = enabled;
+        this.driftSteps = driftSteps;
+        this.entriesPerBucket = Math.max(1, maxEntries / bucketCount);
+        // power of two, load factor at most 0.75 once the bucket is full
+        this.tableSize = Integer.highestOneBit(Math.max(2, (int) Math.min(1 << 30, entriesPerBucket * 4L / 3 + 1)) * 2 - 1);
+        this.stepClock = stepClock;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    /**
+     * Records the use of an OTP validated at the given step
+     * @param client - client the OTP belongs to (client id)
+     * @param step - step the OTP matched
+     * @param otp - the validated OTP
+     * @return - {@link Result#FIRST_USE} if the OTP may be accepted
+     */
+    public Result markUsed(String client, long step, CharSequence otp) {
+        return enabled ? markUsed(fingerprint(client, otp), step) : Result.FIRST_USE;
+    }
+
+    /**
+     * Same as {@link #markUsed(String, long, CharSequence)} for an OTP of the given key, every encoding of the key
+     * (e.g. HEX case) is the same client
+     * @param key - key material the OTP was validated with
+     * @param step - step the OTP matched
+     * @param otp - the validated OTP
+     * @return - {@link Result#FIRST_USE} if the OTP may be accepted
+     */
+    public Result markUsed(TOTPEngine.Key key, long step, CharSequence otp) {
+        return enabled ? markUsed(fingerprint(key.fingerprint(), otp), step) : Result.FIRST_USE;
+    }
+
+    /**
+     * @param step - TOTP step
+     * @return - whether OTPs of the step are recorded, i.e. the step is in the acceptance window
+     */
+    public boolean isInWindow(long step) {
+        long currentStep = stepClock.getAsLong();
+        return enabled && step >= currentStep - driftSteps && step <= currentStep + driftSteps;
+    }
+
+    private Result markUsed(long fingerprint, long step) {
+        long currentStep = stepClock.getAsLong();
+        if (step < currentStep - driftSteps || step > currentStep + driftSteps) {
+            outOfWindow.increment();
+            return Result.OUT_OF_WINDOW;
+        }
+        Bucket bucket = bucket(step);
+        Result result = bucket == null ? Result.OUT_OF_WINDOW : bucket.add(fingerprint, entriesPerBucket);
+        switch (result) {
+            case FIRST_USE -> firstUses.increment();
+            case REPLAY -> replays.increment();
+            case OUT_OF_WINDOW -> outOfWindow.increment();
+            case FULL -> full.increment();
+        }
+        return result;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return - recorded first uses, rejected replays, uses out of window or over the memory ceiling, live entries
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("firstUses", firstUses.sum());
+        stats.put("replays", replays.sum());
+        stats.put("outOfWindow", outOfWindow.sum());
+        stats.put("full", full.sum());
+        long entries = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            entries += bucket != null ? bucket.size.get() : 0;
+        }
+        stats.put("entries", entries);
+        stats.put("maxEntries", (long) entriesPerBucket * buckets.length());
+        stats.put("maxBytes", (long) tableSize * Long.BYTES * buckets.length());
+        return stats;
+    }
+
+    /**
+     * @return - the bucket of the step, replacing the bucket of the expired step sharing its slot, or null when
+     * the slot already holds a newer step (the step expired while the caller was validating)
+     */
+    private Bucket bucket(long step) {
+        int slot = (int) Math.floorMod(step, (long) buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.step == step) {
+                if (bucket.awaitTable()) {
+                    return bucket;
+                }
+                continue;
+            }
+            if (bucket != null && bucket.step > step) {
+                return null;
+            }
+            // threads racing on the rollover only allocate an empty bucket, the winner sizes it
+            Bucket replacement = new Bucket(step);
+            if (buckets.compareAndSet(slot, bucket, replacement)) {
+                try {
+                    replacement.table = new AtomicLongArray(tableSize);
+                } catch (RuntimeException | Error e) {
+                    replacement.abandoned = true;
+                    buckets.compareAndSet(slot, replacement, bucket);
+                    throw e;
+                }
+                return replacement;
+            }
+        }
+    }
+
+    /**
+     * 64 bits FNV-1a of the client and the OTP, never {@link #EMPTY}
+     */
+    static long fingerprint(String client, CharSequence otp) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < client.length(); i++) {
+            hash = (hash ^ client.charAt(i)) * FNV_PRIME;
+        }
+        return fingerprint(hash, otp);
+    }
+
+    /**
+     * @param clientHash - 64 bits hash of the client
+     */
+    static long fingerprint(long clientHash, CharSequence otp) {
+        // separator, so that ("ab", "1") and ("a", "b1") differ
+        long hash = (clientHash ^ 0xff) * FNV_PRIME;
+        for (int i = 0; i < otp.length(); i++) {
+            hash = (hash ^ otp.charAt(i)) * FNV_PRIME;
+        }
+        return hash != EMPTY ? hash : 1;
+    }
+
+    private static final class Bucket {
+
+        private final long step;
+        private final AtomicInteger size = new AtomicInteger();
+        // set by the thread that installed the bucket, null while it allocates it
+        private volatile AtomicLongArray table;
+        private volatile boolean abandoned;
+
+        private Bucket(long step) {
+            this.step = step;
+        }
+
+        /**
+         * @return - false if the table could not be allocated and the bucket was removed
+         */
+        private boolean awaitTable() {
+            while (table == null) {
+                if (abandoned) {
+                    return false;
+                }
+                Thread.yield();
+            }
+            return true;
+        }
+
+        private Result add(long fingerprint, int maxSize) {
+            AtomicLongArray table = this.table;
+            int mask = table.length() - 1;
+            int index = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+            for (int probes = 0; probes <= mask; probes++, index = (index + 1) & mask) {
+                long current = table.get(index);
+                if (current == fingerprint) {
+                    return Result.REPLAY;
+                }
+                if (current != EMPTY) {
+                    continue;
+                }
+                if (size.incrementAndGet() > maxSize) {
+                    size.decrementAndGet();
+                    return Result.FULL;
+                }
+                if (table.compareAndSet(index, EMPTY, fingerprint)) {
+                    return Result.FIRST_USE;
+                }
+                // lost the slot to a concurrent add, it may be the same OTP
+                size.decrementAndGet();
+                if (table.get(index) == fingerprint) {
+                    return Result.REPLAY;
+                }
+            }
+            return Result.FULL;
+        }
+    }
+}
@@ -1,26 +1,22 @@
 package com.apidynamics.test.client_demo.service;
 
-import org.apache.commons.codec.binary.Base32;
-import org.apache.commons.codec.binary.Hex;
+import com.apidynamics.test.client_demo.model.AdaptiveAuthResponseParser;
+import com.apidynamics.test.client_demo.model.ClientCredential;
+import com.apidynamics.test.client_demo.model.ClientTotpResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.data.util.Pair;
-import org.springframework.http.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.lang.reflect.UndeclaredThrowableException;
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
-import java.security.GeneralSecurityException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
 import java.util.Collections;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This service is used to generate self generated TOTP tokens.
@@ -34,13 +30,19 @@ public class TOTPService {
     @Value("${DEMO_SERVER_BASE_URL:http://localhost:8080}")
     private String demoServerBaseURL;
 
+    private static final TOTPEngine ENGINE = new TOTPEngine();
+
     private final ClientIdService clientIdService;
-    private final RestTemplate demoServerRestTemplate;
+    private final DemoServerClient demoServerClient;
+    private final AdaptiveAuthObservations observations;
+    private final TOTPReplayStore replayStore;
 
     @Autowired
-    public TOTPService(@Qualifier("demoServerRestTemplate") RestTemplate demoServerRestTemplate, ClientIdService clientIdService) {
-        this.demoServerRestTemplate = demoServerRestTemplate;
+    public TOTPService(DemoServerClient demoServerClient, ClientIdService clientIdService, AdaptiveAuthObservations observations, TOTPReplayStore replayStore) {
+        this.demoServerClient = demoServerClient;
         this.clientIdService = clientIdService;
+        this.observations = observations;
+        this.replayStore = replayStore;
     }
 
     /**
@@ -60,89 +62,53 @@ public class TOTPService {
         return validate(getStep(), key, otp);
     }
 
+    /**
+     * Same as {@link #validate(String, String)}, but an OTP is only accepted once when replay protection
+     * is enabled (TOTP_REPLAY_PROTECTION_ENABLED)
+     * @param key - secret credential key (HEX)
+     * @param otp - OTP to validate
+     * @return valid and not used before?
+     */
+    public boolean validateOnce(final String key, final String otp) {
+        long step = getStep();
+        TOTPEngine.Key keyMaterial = ENGINE.hexKey(key);
+        int offset = ENGINE.validateWindow(keyMaterial, step, otp, 1, 0);
+        return offset != TOTPEngine.NO_MATCH && replayStore.markUsed(keyMaterial, step + offset, otp) == TOTPReplayStore.Result.FIRST_USE;
+    }
+
     private static boolean validate(final long step, final String key, final String otp) {
-        return getOTP(step, key).equals(otp) || (step > 0 && getOTP(step - 1, key).equals(otp));
+        return ENGINE.validate(ENGINE.hexKey(key), step, otp);
     }
 
     private static long getStep() {
         // 30 seconds StepSize (ID TOTP)
-        return System.currentTimeMillis() / 30000;
+        return TOTPEngine.currentStep();
     }
 
     private static String getOTP(final long step, final String key) {
-        if (step < 0) {
-            throw new IllegalArgumentException("Step must be greater than or equal to zero.");
-        }
-        String steps = Long.toHexString(step).toUpperCase();
-        while (steps.length() < 16) {
-            steps = "0" + steps;
-        }
-
-        // Get the HEX in a Byte[]
-        final byte[] msg = hexStr2Bytes(steps);
-        final byte[] k = hexStr2Bytes(key);
-
-        final byte[] hash = hmac_sha1(k, msg);
-
-        // put selected bytes into result int
-        final int offset = hash[hash.length - 1] & 0xf;
-        final int binary = ((hash[offset] & 0x7f) << 24) | ((hash[offset + 1] & 0xff) << 16) | ((hash[offset + 2] & 0xff) << 8) | (hash[offset + 3] & 0xff);
-        final int otp = binary % 1000000;
-
-        String result = Integer.toString(otp);
-        while (result.length() < 6) {
-            result = "0" + result;
-        }
-        return result;
+        return ENGINE.generateString(ENGINE.hexKey(key), step);
     }
 
     /**
-     * This method converts HEX string to Byte[]
+     * Generate a self generated OTP token that can be validated by Adaptive Authentication Server.
+     * The client id UTF-8 bytes are the HMAC key, the key material is derived once per client id.
      *
-     * @param hex the HEX string
-     *
-     * @return A byte array
-     */
-    private static byte[] hexStr2Bytes(final String hex) {
-        // Adding one byte to get the right conversion
-        // values starting with "0" can be converted
-        final byte[] bArray = new BigInteger("10" + hex, 16).toByteArray();
-        final byte[] ret = new byte[bArray.length - 1];
-
-        // Copy all the REAL bytes, not the "first"
-        System.arraycopy(bArray, 1, ret, 0, ret.length);
-        return ret;
-    }
-
-    /**
-     * This method uses the JCE to provide the crypto algorithm. HMAC computes a Hashed Message Authentication Code with the crypto hash
-     * algorithm as a parameter.
-     *
-     * @param keyBytes the bytes to use for the HMAC key
-     * @param text the message or text to be authenticated.
+     * @return A TOTP token that last 30 seconds
      */
-    private static byte[] hmac_sha1(final byte[] keyBytes, final byte[] text) {
-        try {
-            final Mac hmac = Mac.getInstance("HmacSHA1");
-            final SecretKeySpec macKey = new SecretKeySpec(keyBytes, "RAW");
-            hmac.init(macKey);
-            return hmac.doFinal(text);
-        } catch (final GeneralSecurityException gse) {
-            throw new UndeclaredThrowableException(gse);
-        }
+    public String generateTOTP() {
+        return generateTOTP(clientIdService.getClient());
     }
 
     /**
-     * Generate a self generated OTP token that can be validated by Adaptive Authentication Server
-     *
+     * Same as {@link #generateTOTP()} for a given client, using its precomputed key material
+     * @param client - client the token is generated for
      * @return A TOTP token that last 30 seconds
      */
-    public String generateTOTP() {
-        Base32 base32 = new Base32();
-        // we must make sure that used key can be encoded into Base32
-        byte[] encodedBytes = base32.encode(clientIdService.getClientId().getBytes(StandardCharsets.UTF_8));
-        String token = getOTP(Hex.encodeHexString(base32.decode(encodedBytes)));
-        LOG.info("Generated TOTP token : {}", token);
+    public String generateTOTP(ClientCredential client) {
+        long start = System.nanoTime();
+        String token = ENGINE.generateString(client.totpKey(), getStep());
+        observations.totpGenerated(System.nanoTime() - start);
+        LOG.debug("Generated TOTP token : {}", token);
 
         return token;
     }
@@ -154,13 +120,35 @@ public class TOTPService {
      * @param transactionId - Current adaptive transaction id
      * @return - Adaptive Authentication Server response
      */
-    public Pair<HttpStatusCode, Map<String, Object>> getTotpToken(String transactionId) {
+    public Pair<HttpStatusCode, ClientTotpResponse> getTotpToken(String transactionId) {
+        return demoServerClient.exchange(totpTokenCall(transactionId, clientIdService.getClientId()), AdaptiveAuthResponseParser::clientTotp);
+    }
+
+    /**
+     * Async variant of {@link #getTotpToken(String)}
+     * @param transactionId - Current adaptive transaction id
+     * @return - Adaptive Authentication Server response future
+     */
+    public CompletableFuture<Pair<HttpStatusCode, ClientTotpResponse>> getTotpTokenAsync(String transactionId) {
+        return getTotpTokenAsync(transactionId, clientIdService.getClientId());
+    }
+
+    /**
+     * Same as {@link #getTotpTokenAsync(String)} for a given client
+     * @param transactionId - Current adaptive transaction id
+     * @param clientId - client id "public key"
+     * @return - Adaptive Authentication Server response future
+     */
+    public CompletableFuture<Pair<HttpStatusCode, ClientTotpResponse>> getTotpTokenAsync(String transactionId, String clientId) {
+        return demoServerClient.exchangeAsync(totpTokenCall(transactionId, clientId), AdaptiveAuthResponseParser::clientTotp);
+    }
+
+    private UpstreamCall totpTokenCall(String transactionId, String clientId) {
         HttpHeaders headers = new HttpHeaders();
         headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-        headers.add("X-API-Dynamics-Client-Id", clientIdService.getClientId());
-        HttpEntity<?> entity = new HttpEntity<>(headers);
-        ParameterizedTypeReference<Map<String, Object>> responseType = new ParameterizedTypeReference<>() {};
-        ResponseEntity<Map<String, Object>> response = demoServerRestTemplate.exchange(demoServerBaseURL + "/adaptiveAuthentication/generateClientTotp?tid={transactionId}", HttpMethod.GET, entity, responseType, transactionId);
-        return Pair.of(response.getStatusCode(), response.getBody());
+        headers.add("X-API-Dynamics-Client-Id", clientId);
+        URI uri = UriComponentsBuilder.fromUriString(demoServerBaseURL + "/adaptiveAuthentication/generateClientTotp?tid={transactionId}")
+                .buildAndExpand(transactionId).encode().toUri();
+        return new UpstreamCall("generateClientTotp", uri, headers);
     }
 }
@@ -0,0 +1,282 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.model.ClientCredential;
+import com.apidynamics.test.client_demo.model.TimestampBatchItem;
+import com.apidynamics.test.client_demo.model.TimestampBatchResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the /timestamp challenge flow (timestamp call, TOTP challenge, validation, retry) of many clients at once,
+ * for synthetic monitoring. Each batch is a scope: one virtual thread is forked per flow, at most
+ * TIMESTAMP_BATCH_PARALLELISM flows of the batch hold a slot at a time, and the scope does not outlive the batch
+ * deadline - once it passes the forks still waiting or running are interrupted, joined, and their flows reported
+ * as DEADLINE_EXCEEDED. Results are handed back on the calling thread as flows complete, not in item order.
+ * Flows of the same client and strategy share one upstream flow (see {@link UpstreamCallCoalescer}), a flow
+ * abandoned at the deadline keeps running until its own upstream timeout.
+ */
+@Service
+public class TimestampBatchService {
+
+    private final AdaptiveAuthChallengeService adaptiveAuthChallengeService;
+    private final DemoServerApiService demoServerApiService;
+    private final ClientRegistry clientRegistry;
+    private final int parallelism;
+    private final Duration timeout;
+    private final int maxItems;
+    private final ThreadFactory forks = Thread.ofVirtual().name("timestamp-batch-", 0).factory();
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder flows = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deadlineExceeded = new LongAdder();
+
+    /**
+     * @param adaptiveAuthChallengeService - runs the challenge flows
+     * @param demoServerApiService - builds the timestamp calls
+     * @param clientRegistry - resolves the requested clients
+     * @param parallelism - flows of one batch running at a time
+     * @param timeoutMs - batch deadline, and the longest one a request may ask for
+     * @param maxItems - items accepted in one batch
+     */
+    @Autowired
+    public TimestampBatchService(AdaptiveAuthChallengeService adaptiveAuthChallengeService, DemoServerApiService demoServerApiService,
+                                 ClientRegistry clientRegistry,
+                                 @Value("${TIMESTAMP_BATCH_PARALLELISM:32}") int parallelism,
+                                 @Value("${TIMESTAMP_BATCH_TIMEOUT_MS:30000}") long timeoutMs,
+                                 @Value("${TIMESTAMP_BATCH_MAX_ITEMS:1000}") int maxItems) {
+        if (parallelism < 1 || timeoutMs < 1 || maxItems < 1) {
+            throw new IllegalArgumentException("TIMESTAMP_BATCH_PARALLELISM, TIMESTAMP_BATCH_TIMEOUT_MS and TIMESTAMP_BATCH_MAX_ITEMS must be positive");
+        }
+        this.adaptiveAuthChallengeService = adaptiveAuthChallengeService;
+        this.demoServerApiService = demoServerApiService;
+        this.clientRegistry = clientRegistry;
+        this.parallelism = parallelism;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * Resolves the clients and builds their timestamp calls, must run on the request thread since the calls
+     * carry the forwarded headers of the current request
+     * @param items - requested clients and strategies
+     * @return - one flow per item, in item order, unknown clients are failed flows
+     * @throws IllegalArgumentException - when there are more than TIMESTAMP_BATCH_MAX_ITEMS items
+     */
+    public List<Flow> plan(List<TimestampBatchItem> items) {
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("More than " + maxItems + " client items");
+        }
+        List<Flow> planned = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            TimestampBatchItem item = items.get(i);
+            ClientCredential client = item.client() != null ? clientRegistry.find(item.client()) : null;
+            if (client == null) {
+                planned.add(Flow.failed(i, item.client(), item.tokenType(), TimestampBatchResult.UNKNOWN_CLIENT,
+                        item.client() != null ? "Unknown client " + item.client() : "client is required"));
+                continue;
+            }
+            UpstreamCall call = demoServerApiService.timestampCall(client.publicKey());
+            planned.add(new Flow(i, item.client(), item.tokenType(),
+                    () -> adaptiveAuthChallengeService.executeAsync(call, item.tokenType(), client), null, null));
+        }
+        return planned;
+    }
+
+    /**
+     * Runs the flows, returns once every flow is reported
+     * @param planned - flows of {@link #plan}
+     * @param timeout - batch deadline, from now, capped at TIMESTAMP_BATCH_TIMEOUT_MS, null for the default
+     * @param sink - result consumer, called on the calling thread, a failing sink cancels the batch
+     * @return - batch totals
+     * @throws InterruptedException - when the calling thread is interrupted, the batch is cancelled
+     */
+    public Summary run(List<Flow> planned, Duration timeout, Consumer<TimestampBatchResult> sink) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + deadline(timeout).toNanos();
+        Aggregate aggregate = new Aggregate(sink);
+        Semaphore slots = new Semaphore(parallelism);
+        BlockingQueue<TimestampBatchResult> completed = new LinkedBlockingQueue<>();
+        batches.increment();
+        try (ExecutorService scope = Executors.newThreadPerTaskExecutor(forks)) {
+            try {
+                int pending = 0;
+                for (Flow flow : planned) {
+                    if (flow.start() == null) {
+                        aggregate.accept(TimestampBatchResult.failed(flow.index(), flow.client(), flow.tokenType(), flow.outcome(), flow.error(), 0, 0));
+                    } else {
+                        scope.submit(() -> completed.add(fork(flow, slots, deadline)));
+                        pending++;
+                    }
+                }
+                for (; pending > 0; pending--) {
+                    TimestampBatchResult result = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (result == null) {
+                        break;
+                    }
+                    aggregate.accept(result);
+                }
+            } finally {
+                // deadline passed or the batch failed: interrupt the forks left, closing the scope joins them
+                scope.shutdownNow();
+            }
+        }
+        // every fork reported before the scope closed, the ones left completed at or after the deadline
+        for (TimestampBatchResult result; (result = completed.poll()) != null; ) {
+            aggregate.accept(result);
+        }
+        return aggregate.summary(System.nanoTime() - start);
+    }
+
+    /**
+     * @return - batches and flows run, flow outcomes, settings
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches.sum());
+        stats.put("flows", flows.sum());
+        stats.put("succeeded", succeeded.sum());
+        stats.put("failed", failed.sum());
+        stats.put("deadlineExceeded", deadlineExceeded.sum());
+        stats.put("parallelism", parallelism);
+        stats.put("timeoutMs", timeout.toMillis());
+        stats.put("maxItems", maxItems);
+        return stats;
+    }
+
+    /**
+     * @param timeout - requested batch deadline, null for the default
+     * @return - deadline the batch runs with, capped at TIMESTAMP_BATCH_TIMEOUT_MS
+     */
+    public Duration deadline(Duration timeout) {
+        return timeout != null && timeout.compareTo(this.timeout) < 0 ? timeout : this.timeout;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    private static TimestampBatchResult fork(Flow flow, Semaphore slots, long deadline) {
+        long queuedAt = System.nanoTime();
+        long startedAt = queuedAt;
+        boolean acquired = false;
+        try {
+            // tryAcquire does not wait at all with an expired timeout, but still takes a free slot
+            acquired = deadline - queuedAt > 0 && slots.tryAcquire(deadline - queuedAt, TimeUnit.NANOSECONDS);
+            startedAt = System.nanoTime();
+            if (!acquired) {
+                return deadlineExceeded(flow, startedAt - queuedAt, 0);
+            }
+            CompletableFuture<ChallengeResult> result = flow.start().get();
+            return completed(flow, result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS), startedAt - queuedAt, System.nanoTime() - startedAt);
+        } catch (TimeoutException | InterruptedException e) {
+            // an interrupt is the scope shutting down at the deadline, the thread ends here
+            return deadlineExceeded(flow, startedAt - queuedAt, System.nanoTime() - startedAt);
+        } catch (ExecutionException | RuntimeException e) {
+            Throwable cause = e instanceof ExecutionException || e instanceof CompletionException ? e.getCause() : e;
+            String error = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+            return TimestampBatchResult.failed(flow.index(), flow.client(), flow.tokenType(), TimestampBatchResult.ERROR, error,
+                    startedAt - queuedAt, System.nanoTime() - startedAt);
+        } finally {
+            if (acquired) {
+                slots.release();
+            }
+        }
+    }
+
+    private static TimestampBatchResult completed(Flow flow, ChallengeResult result, long queuedNanos, long durationNanos) {
+        boolean success = result.outcome() == ChallengeResult.Outcome.SUCCESS;
+        Map<String, Long> stageNanos = new LinkedHashMap<>();
+        result.stages().forEach(stage -> stageNanos.merge(stage.name(), stage.nanos(), Long::sum));
+        return new TimestampBatchResult(flow.index(), flow.client(), flow.tokenType(), result.outcome().name(), result.status().value(),
+                success ? result.response().timestamp() : null, result.challenges(), result.error(), queuedNanos, durationNanos, stageNanos);
+    }
+
+    private static TimestampBatchResult deadlineExceeded(Flow flow, long queuedNanos, long durationNanos) {
+        return TimestampBatchResult.failed(flow.index(), flow.client(), flow.tokenType(), TimestampBatchResult.DEADLINE_EXCEEDED,
+                "Batch deadline exceeded", queuedNanos, durationNanos);
+    }
+
+    /**
+     * One planned challenge flow
+     * @param index - position of the item in the request
+     * @param client - client as requested
+     * @param tokenType - Token generation strategy (self, server)
+     * @param start - starts the flow, null when it failed at planning
+     * @param outcome - why it failed at planning
+     * @param error - planning error
+     */
+    public record Flow(int index, String client, String tokenType, Supplier<CompletableFuture<ChallengeResult>> start, String outcome, String error) {
+
+        static Flow failed(int index, String client, String tokenType, String outcome, String error) {
+            return new Flow(index, client, tokenType, null, outcome, error);
+        }
+    }
+
+    /**
+     * @param items - flows reported
+     * @param succeeded - flows ending with SUCCESS
+     * @param failed - flows with any other outcome, deadline exceeded ones excluded
+     * @param deadlineExceeded - flows cut by the deadline
+     * @param durationNanos - batch duration
+     */
+    public record Summary(int items, int succeeded, int failed, int deadlineExceeded, long durationNanos) {
+    }
+
+    /**
+     * Counts the results passed to the sink, only used by the thread running the batch
+     */
+    private final class Aggregate implements Consumer<TimestampBatchResult> {
+
+        private final Consumer<TimestampBatchResult> sink;
+        private int items;
+        private int succeededItems;
+        private int deadlineExceededItems;
+
+        private Aggregate(Consumer<TimestampBatchResult> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void accept(TimestampBatchResult result) {
+            items++;
+            flows.increment();
+            if (result.outcome().equals(ChallengeResult.Outcome.SUCCESS.name())) {
+                succeededItems++;
+                succeeded.increment();
+            } else if (result.outcome().equals(TimestampBatchResult.DEADLINE_EXCEEDED)) {
+                deadlineExceededItems++;
+                deadlineExceeded.increment();
+            } else {
+                failed.increment();
+            }
+            sink.accept(result);
+        }
+
+        private Summary summary(long durationNanos) {
+            return new Summary(items, succeededItems, items - succeededItems - deadlineExceededItems, deadlineExceededItems, durationNanos);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.apidynamics.test.client_demo.service;
+
+/**
+ * The client selected by a request is not in the {@link ClientRegistry}
+ */
+public class UnknownClientException extends RuntimeException {
+
+    private final String clientRef;
+
+    public UnknownClientException(String clientRef) {
+        super("Unknown client " + clientRef);
+        this.clientRef = clientRef;
+    }
+
+    public String getClientRef() {
+        return clientRef;
+    }
+}
@@ -0,0 +1,14 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.springframework.http.HttpHeaders;
+
+import java.net.URI;
+
+/**
+ * A fully built upstream GET call, independent of the transport (blocking or async) that executes it
+ * @param endpoint - logical endpoint name (timestamp, generateClientTotp, validateClientTotp, httpbin)
+ * @param uri - expanded and encoded URI
+ * @param headers - request headers
+ */
+public record UpstreamCall(String endpoint, URI uri, HttpHeaders headers) {
+}
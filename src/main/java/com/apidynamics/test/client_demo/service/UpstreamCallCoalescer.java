@@ -0,0 +1,138 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Optional single-flight layer in front of upstream calls. Concurrent identical calls, keyed by
+ * endpoint, URI and the configured headers (client id, forwarded headers), share one in-flight
+ * upstream call and its result. Coalesced callers share the response body, which must be treated as read-only.
+ */
+@Component
+public class UpstreamCallCoalescer {
+
+    @Value("${UPSTREAM_COALESCING_ENABLED:false}")
+    private boolean enabled;
+
+    // headers that, together with endpoint and URI, make two calls identical
+    @Value("${UPSTREAM_COALESCING_KEY_HEADERS:X-API-Dynamics-Client-Id,User-Agent,Remote_Addr}")
+    private String[] keyHeaders;
+
+    // endpoints that are never coalesced
+    @Value("${UPSTREAM_COALESCING_DISABLED_ENDPOINTS:httpbin}")
+    private String[] disabledEndpoints;
+
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param call - upstream call
+     * @return - true if identical concurrent calls are coalesced
+     */
+    public boolean appliesTo(UpstreamCall call) {
+        if (!enabled) {
+            return false;
+        }
+        for (String disabledEndpoint : disabledEndpoints) {
+            if (disabledEndpoint.equals(call.endpoint())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the upstream call, or joins the identical call already in flight
+     * @param call - upstream call, provides the coalescing key
+     * @param scope - what is coalesced (a single call, a whole challenge flow, ...)
+     * @param upstream - starts the upstream call
+     * @return - a future of the shared result, private to the caller
+     */
+    public <T> CompletableFuture<T> execute(UpstreamCall call, String scope, Supplier<CompletableFuture<T>> upstream) {
+        if (!appliesTo(call)) {
+            return upstream.get();
+        }
+        Counters stats = counters.computeIfAbsent(scope + ":" + call.endpoint(), k -> new Counters());
+        String key = key(call, scope);
+        CompletableFuture<T> mine = new CompletableFuture<>();
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            stats.coalesced.increment();
+            return existing.copy();
+        }
+        stats.executed.increment();
+        CompletableFuture<T> result;
+        try {
+            result = upstream.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            // callers arriving from now on start a new upstream call
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine.copy();
+    }
+
+    /**
+     * Blocking variant of {@link #execute(UpstreamCall, String, Supplier)}, the first caller runs the call on its own thread
+     * @param call - upstream call, provides the coalescing key
+     * @param scope - what is coalesced
+     * @param upstream - runs the upstream call
+     * @return - the shared result
+     */
+    public <T> T executeBlocking(UpstreamCall call, String scope, Supplier<T> upstream) {
+        if (!appliesTo(call)) {
+            return upstream.get();
+        }
+        try {
+            return execute(call, scope, () -> CompletableFuture.completedFuture(upstream.get())).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return - executed and coalesced calls per scope and endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        counters.forEach((endpoint, endpointCounters) -> stats.put(endpoint, Map.of(
+                "executed", endpointCounters.executed.sum(),
+                "coalesced", endpointCounters.coalesced.sum())));
+        return stats;
+    }
+
+    private String key(UpstreamCall call, String scope) {
+        StringBuilder key = new StringBuilder(128)
+                .append(scope).append('|')
+                .append(call.endpoint()).append('|')
+                .append(call.uri());
+        for (String header : keyHeaders) {
+            key.append('|').append(call.headers().getOrEmpty(header));
+        }
+        return key.toString();
+    }
+
+    private static final class Counters {
+        private final LongAdder executed = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+    }
+}
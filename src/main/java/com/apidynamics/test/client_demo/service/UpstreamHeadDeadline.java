@@ -0,0 +1,77 @@
+package com.apidynamics.test.client_demo.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive timeout of the response head of a streamed upstream call. A relayed body may take much longer than the
+ * adaptive timeout to flow, so the streamed call is sent with the static response timeout of the client and the
+ * request is aborted when its head is late. The pooled HTTP client registers the abort action of the request it
+ * creates on this thread (see RestClientConfig), the other clients only apply their static timeout.
+ */
+public final class UpstreamHeadDeadline {
+
+    private static final ThreadLocal<UpstreamHeadDeadline> CURRENT = new ThreadLocal<>();
+
+    private static final int PENDING = 0;
+    private static final int RECEIVED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Duration timeout;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    UpstreamHeadDeadline(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Called by the HTTP client for each request it creates
+     * @param abort - aborts the request, the thread reading its response fails
+     */
+    public static void requestCreated(Runnable abort) {
+        UpstreamHeadDeadline deadline = CURRENT.get();
+        if (deadline != null) {
+            CompletableFuture.delayedExecutor(deadline.timeout.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                if (deadline.state.compareAndSet(PENDING, EXPIRED)) {
+                    abort.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the call with the static response timeout of the client and this deadline for the response head
+     */
+    <T> T run(Supplier<T> call) {
+        UpstreamHeadDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            // no adaptive response timeout, the client keeps its static one
+            return UpstreamRequestTimeout.with(null, call);
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return - false when the deadline expired first, the request is being aborted
+     */
+    boolean headReceived() {
+        return state.compareAndSet(PENDING, RECEIVED) || state.get() == RECEIVED;
+    }
+
+    boolean isExpired() {
+        return state.get() == EXPIRED;
+    }
+
+    Duration timeout() {
+        return timeout;
+    }
+}
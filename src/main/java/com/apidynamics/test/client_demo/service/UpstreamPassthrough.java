@@ -0,0 +1,133 @@
+package com.apidynamics.test.client_demo.service;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Copies an upstream response as is to the servlet response: status, the PASSTHROUGH_RESPONSE_HEADERS headers
+ * (hop-by-hop headers never) and the body, chunk by chunk through a pooled buffer, so the body is never held
+ * on the heap as a whole nor parsed. Buffers are kept in a lock-free pool of at most PASSTHROUGH_BUFFER_POOL_SIZE,
+ * a copy finding the pool empty allocates its own buffer and returns it to the pool when there is room.
+ */
+@Component
+public class UpstreamPassthrough {
+
+    private static final Set<String> HOP_BY_HOP = Set.of("connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+            "te", "trailer", "transfer-encoding", "upgrade");
+
+    private final Set<String> passthroughHeaders;
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder bufferAllocations = new LongAdder();
+
+    /**
+     * @param passthroughHeaders - comma separated response headers copied to the client, case insensitive
+     * @param bufferSize - copy buffer size in bytes
+     * @param maxPooledBuffers - buffers kept for reuse between copies
+     */
+    @Autowired
+    public UpstreamPassthrough(@Value("${PASSTHROUGH_RESPONSE_HEADERS:Content-Type,Content-Length,Content-Encoding,Content-Language,Content-Disposition,Cache-Control,ETag,Last-Modified,Expires,Vary}") String passthroughHeaders,
+                               @Value("${PASSTHROUGH_BUFFER_SIZE:16384}") int bufferSize,
+                               @Value("${PASSTHROUGH_BUFFER_POOL_SIZE:64}") int maxPooledBuffers) {
+        if (bufferSize < 1 || maxPooledBuffers < 0) {
+            throw new IllegalArgumentException("PASSTHROUGH_BUFFER_SIZE must be positive, PASSTHROUGH_BUFFER_POOL_SIZE not negative");
+        }
+        this.passthroughHeaders = Arrays.stream(passthroughHeaders.split(","))
+                .map(header -> header.strip().toLowerCase(Locale.ROOT))
+                .filter(header -> !header.isEmpty() && !HOP_BY_HOP.contains(header))
+                .collect(Collectors.toUnmodifiableSet());
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Sets the status and headers of the target, then streams the body, the target is committed once this returns
+     * @param source - upstream response, its body is read to the end
+     * @param target - response sent to the client
+     * @return - body bytes copied
+     */
+    public long copy(ClientHttpResponse source, HttpServletResponse target) throws IOException {
+        target.setStatus(source.getStatusCode().value());
+        source.getHeaders().forEach((name, values) -> {
+            if (passthroughHeaders.contains(name.toLowerCase(Locale.ROOT))) {
+                copyHeader(name, values, target);
+            }
+        });
+        long copied = 0;
+        byte[] buffer = acquire();
+        try (InputStream body = source.getBody()) {
+            OutputStream out = target.getOutputStream();
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                copied += read;
+            }
+            out.flush();
+        } finally {
+            release(buffer);
+            responses.increment();
+            bytes.add(copied);
+        }
+        return copied;
+    }
+
+    /**
+     * @return - responses and bytes copied, buffers allocated and pooled
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("responses", responses.sum());
+        stats.put("bytes", bytes.sum());
+        stats.put("bufferSize", bufferSize);
+        stats.put("bufferAllocations", bufferAllocations.sum());
+        stats.put("pooledBuffers", pooledBuffers.get());
+        stats.put("maxPooledBuffers", maxPooledBuffers);
+        return stats;
+    }
+
+    private static void copyHeader(String name, List<String> values, HttpServletResponse target) {
+        for (String value : values) {
+            target.addHeader(name, value);
+        }
+    }
+
+    private byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        if (buffer != null) {
+            pooledBuffers.decrementAndGet();
+            return buffer;
+        }
+        bufferAllocations.increment();
+        return new byte[bufferSize];
+    }
+
+    private void release(byte[] buffer) {
+        if (pooledBuffers.incrementAndGet() <= maxPooledBuffers) {
+            buffers.offer(buffer);
+        } else {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+}
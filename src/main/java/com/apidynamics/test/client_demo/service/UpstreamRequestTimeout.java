@@ -0,0 +1,37 @@
+package com.apidynamics.test.client_demo.service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Carries the adaptive response timeout of a blocking upstream call to the pooled HTTP client,
+ * which reads it when the request context is created (see RestClientConfig)
+ */
+public final class UpstreamRequestTimeout {
+
+    private static final ThreadLocal<Duration> CURRENT = new ThreadLocal<>();
+
+    private UpstreamRequestTimeout() {
+    }
+
+    /**
+     * @return - response timeout of the blocking call running on this thread, null outside of one
+     */
+    public static Duration current() {
+        return CURRENT.get();
+    }
+
+    static <T> T with(Duration timeout, Supplier<T> call) {
+        Duration previous = CURRENT.get();
+        CURRENT.set(timeout);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.apidynamics.test.client_demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.Pair;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Resilience layer of the upstream calls, per endpoint:
+ * <ul>
+ *     <li>adaptive timeout: p99 of the recent latencies times a multiplier, between a floor and DEMO_SERVER_HTTP_RESPONSE_TIMEOUT_MS</li>
+ *     <li>hedging (async calls of idempotent endpoints only, closed circuit only): a second attempt is sent when the first
+ *     one is still pending after the p95 latency, the first response wins, within a budget of hedges per call</li>
+ *     <li>circuit breaker: transport errors, timeouts and 5xx responses count as failures, an open circuit fails
+ *     fast with {@link UpstreamUnavailableException}. 4xx responses (challenges, rejections) are answers, not failures</li>
+ * </ul>
+ * Circuit states and transitions, hedges and hedge wins and current timeouts are exported as meters.
+ */
+@Component
+public class UpstreamResilience {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpstreamResilience.class);
+
+    @Value("${RESILIENCE_ENABLED:true}")
+    private boolean enabled;
+
+    @Value("${DEMO_SERVER_HTTP_RESPONSE_TIMEOUT_MS:10000}")
+    private long maxTimeoutMs;
+
+    @Value("${RESILIENCE_TIMEOUT_MIN_MS:250}")
+    private long minTimeoutMs;
+
+    @Value("${RESILIENCE_TIMEOUT_P99_MULTIPLIER:4}")
+    private double timeoutMultiplier;
+
+    @Value("${RESILIENCE_HEDGING_ENABLED:false}")
+    private boolean hedgingEnabled;
+
+    // only idempotent GETs may be hedged
+    @Value("${RESILIENCE_HEDGE_ENDPOINTS:timestamp,generateClientTotp}")
+    private String[] hedgeEndpoints;
+
+    // hedges sent per call at most, bounds the extra load on a slow server
+    @Value("${RESILIENCE_HEDGE_MAX_RATIO:0.1}")
+    private double hedgeMaxRatio;
+
+    @Value("${RESILIENCE_CIRCUIT_FAILURE_RATE:0.5}")
+    private double circuitFailureRate;
+
+    @Value("${RESILIENCE_CIRCUIT_MIN_CALLS:20}")
+    private int circuitMinCalls;
+
+    @Value("${RESILIENCE_CIRCUIT_WINDOW_MS:10000}")
+    private long circuitWindowMs;
+
+    @Value("${RESILIENCE_CIRCUIT_OPEN_MS:5000}")
+    private long circuitOpenMs;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, EndpointGuard> guards = new ConcurrentHashMap<>();
+
+    public UpstreamResilience(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Blocking call through the circuit breaker, with the adaptive timeout
+     * @param call - upstream call
+     * @param exchange - runs the call with the given response timeout
+     * @return - upstream response
+     */
+    public <T> Pair<HttpStatusCode, T> execute(UpstreamCall call, Function<Duration, Pair<HttpStatusCode, T>> exchange) {
+        if (!enabled) {
+            return exchange.apply(Duration.ofMillis(maxTimeoutMs));
+        }
+        EndpointGuard guard = guard(call);
+        long permit = acquire(call, guard);
+        Duration timeout = guard.timeout();
+        long start = System.nanoTime();
+        try {
+            Pair<HttpStatusCode, T> response = UpstreamRequestTimeout.with(timeout, () -> exchange.apply(timeout));
+            guard.latency.record(System.nanoTime() - start);
+            guard.breaker.onResult(permit, !response.getFirst().is5xxServerError());
+            return response;
+        } catch (RuntimeException e) {
+            guard.recordFailedAttempt(System.nanoTime() - start, timeout);
+            guard.breaker.onResult(permit, false);
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking call through the circuit breaker, with the adaptive timeout and hedging when enabled for the endpoint
+     * @param call - upstream call
+     * @param exchange - starts an attempt with the given response timeout, may be called twice when hedging
+     * @return - future of the first upstream response
+     */
+    public <T> CompletableFuture<Pair<HttpStatusCode, T>> executeAsync(UpstreamCall call, Function<Duration, CompletableFuture<Pair<HttpStatusCode, T>>> exchange) {
+        if (!enabled) {
+            return exchange.apply(Duration.ofMillis(maxTimeoutMs));
+        }
+        EndpointGuard guard = guard(call);
+        long permit;
+        try {
+            permit = acquire(call, guard);
+        } catch (UpstreamUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Duration timeout = guard.timeout();
+        long hedgeDelayNanos = guard.latency.p95Nanos();
+        // a probe of a recovering server is sent once
+        CompletableFuture<Pair<HttpStatusCode, T>> response = hedgeDelayNanos > 0 && permit == CircuitBreaker.PERMITTED && isHedged(call)
+                ? hedged(guard, exchange, timeout, hedgeDelayNanos)
+                : attempt(guard, exchange, timeout);
+        return response.whenComplete((result, error) -> guard.breaker.onResult(permit, error == null && !result.getFirst().is5xxServerError()));
+    }
+
+    /**
+     * @return - circuit state, timeout, latency percentiles and hedging counters per endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        guards.forEach((endpoint, guard) -> {
+            Map<String, Object> endpointStats = new LinkedHashMap<>();
+            endpointStats.put("state", guard.breaker.state());
+            endpointStats.put("timeoutMs", guard.timeout().toMillis());
+            endpointStats.put("p95Ms", toMillis(guard.latency.p95Nanos()));
+            endpointStats.put("p99Ms", toMillis(guard.latency.p99Nanos()));
+            endpointStats.put("samples", guard.latency.count());
+            endpointStats.put("calls", guard.calls.sum());
+            endpointStats.put("rejected", guard.rejected.sum());
+            endpointStats.put("hedges", guard.hedges.sum());
+            endpointStats.put("hedgeWins", guard.hedgeWins.sum());
+            endpointStats.put("primaryWins", guard.primaryWins.sum());
+            long hedges = guard.hedges.sum();
+            endpointStats.put("hedgeWinRate", hedges == 0 ? 0.0 : (double) guard.hedgeWins.sum() / hedges);
+            stats.put(endpoint, endpointStats);
+        });
+        return stats;
+    }
+
+    private EndpointGuard guard(UpstreamCall call) {
+        return guards.computeIfAbsent(call.endpoint(), EndpointGuard::new);
+    }
+
+    /**
+     * @return - circuit breaker permit of the call
+     */
+    private long acquire(UpstreamCall call, EndpointGuard guard) {
+        long permit = guard.breaker.tryAcquire();
+        if (permit == CircuitBreaker.REJECTED) {
+            guard.rejected.increment();
+            throw new UpstreamUnavailableException(call.endpoint(), TimeUnit.NANOSECONDS.toMillis(guard.breaker.remainingOpenNanos()));
+        }
+        guard.calls.increment();
+        return permit;
+    }
+
+    private <R> CompletableFuture<R> attempt(EndpointGuard guard, Function<Duration, CompletableFuture<R>> exchange, Duration timeout) {
+        long start = System.nanoTime();
+        CompletableFuture<R> response;
+        try {
+            response = exchange.apply(timeout);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response.whenComplete((result, error) -> {
+            if (error == null) {
+                guard.latency.record(System.nanoTime() - start);
+            } else {
+                guard.recordFailedAttempt(System.nanoTime() - start, timeout);
+            }
+        });
+    }
+
+    /**
+     * First response wins, the call fails only when every attempt sent failed.
+     * The losing attempt is left to complete, its response is discarded.
+     */
+    private <R> CompletableFuture<R> hedged(EndpointGuard guard, Function<Duration, CompletableFuture<R>> exchange, Duration timeout, long hedgeDelayNanos) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicBoolean hedgeSent = new AtomicBoolean();
+        attempt(guard, exchange, timeout).whenComplete((response, error) -> {
+            if (error == null) {
+                if (result.complete(response) && hedgeSent.get()) {
+                    guard.primaryWins.increment();
+                }
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        });
+        CompletableFuture.delayedExecutor(hedgeDelayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            // no hedge once the call completed, a failed call is not resurrected, nor while the circuit is not closed
+            if (result.isDone() || guard.breaker.state() != CircuitBreaker.State.CLOSED || !guard.allowHedge()
+                    || pending.getAndUpdate(p -> p == 0 ? 0 : p + 1) == 0) {
+                return;
+            }
+            hedgeSent.set(true);
+            guard.hedges.increment();
+            attempt(guard, exchange, timeout).whenComplete((response, error) -> {
+                if (error == null) {
+                    if (result.complete(response)) {
+                        guard.hedgeWins.increment();
+                    }
+                } else if (pending.decrementAndGet() == 0) {
+                    result.completeExceptionally(error);
+                }
+            });
+        });
+        return result;
+    }
+
+    private boolean isHedged(UpstreamCall call) {
+        if (!hedgingEnabled) {
+            return false;
+        }
+        for (String hedgeEndpoint : hedgeEndpoints) {
+            if (hedgeEndpoint.equals(call.endpoint())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1_000_000.0;
+    }
+
+    /**
+     * Latency window, circuit breaker and counters of one endpoint. Endpoint names come from the code,
+     * so the number of guards, and of exported series, is fixed.
+     */
+    private final class EndpointGuard {
+        private final String endpoint;
+        private final LatencyWindow latency = new LatencyWindow();
+        private final CircuitBreaker breaker;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final LongAdder primaryWins = new LongAdder();
+
+        private EndpointGuard(String endpoint) {
+            this.endpoint = endpoint;
+            this.breaker = new CircuitBreaker(circuitFailureRate, circuitMinCalls,
+                    TimeUnit.MILLISECONDS.toNanos(circuitWindowMs), TimeUnit.MILLISECONDS.toNanos(circuitOpenMs),
+                    System::nanoTime, this::onTransition);
+            Gauge.builder("adaptive.auth.circuit.state", breaker, b -> b.state().ordinal())
+                    .description("Circuit state: 0 closed, 1 half-open, 2 open")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            Gauge.builder("adaptive.auth.timeout", this, guard -> guard.timeout().toMillis())
+                    .description("Current adaptive response timeout")
+                    .baseUnit("milliseconds")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            FunctionCounter.builder("adaptive.auth.circuit.rejected", rejected, LongAdder::sum)
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            FunctionCounter.builder("adaptive.auth.hedge.requests", hedges, LongAdder::sum)
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            FunctionCounter.builder("adaptive.auth.hedge.wins", hedgeWins, LongAdder::sum)
+                    .tag("endpoint", endpoint)
+                    .tag("winner", "hedge")
+                    .register(meterRegistry);
+            FunctionCounter.builder("adaptive.auth.hedge.wins", primaryWins, LongAdder::sum)
+                    .tag("endpoint", endpoint)
+                    .tag("winner", "primary")
+                    .register(meterRegistry);
+        }
+
+        private Duration timeout() {
+            long p99Nanos = latency.p99Nanos();
+            if (p99Nanos < 0) {
+                return Duration.ofMillis(maxTimeoutMs);
+            }
+            long timeoutMs = (long) (TimeUnit.NANOSECONDS.toMillis(p99Nanos) * timeoutMultiplier);
+            return Duration.ofMillis(Math.max(minTimeoutMs, Math.min(maxTimeoutMs, timeoutMs)));
+        }
+
+        private boolean allowHedge() {
+            return hedges.sum() < hedgeMaxRatio * calls.sum();
+        }
+
+        /**
+         * A timed out attempt is a latency sample of the timeout, so a slowing server raises the next timeouts.
+         * Fast failures (connection refused) say nothing about latency and are not sampled.
+         */
+        private void recordFailedAttempt(long nanos, Duration timeout) {
+            if (nanos >= timeout.toNanos()) {
+                latency.record(nanos);
+            }
+        }
+
+        private void onTransition(CircuitBreaker.State from, CircuitBreaker.State to) {
+            LOG.warn("Circuit of adaptive auth endpoint {} : {} -> {}", endpoint, from, to);
+            Counter.builder("adaptive.auth.circuit.transitions")
+                    .tag("endpoint", endpoint)
+                    .tag("state", to.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
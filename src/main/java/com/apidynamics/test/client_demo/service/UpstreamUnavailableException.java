@@ -0,0 +1,26 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown without calling upstream when the circuit of the endpoint is open
+ */
+public class UpstreamUnavailableException extends RestClientException {
+
+    private final String endpoint;
+    private final long retryAfterMillis;
+
+    public UpstreamUnavailableException(String endpoint, long retryAfterMillis) {
+        super(String.format("Adaptive authentication endpoint '%s' is unavailable (circuit open), retry in %d ms", endpoint, retryAfterMillis));
+        this.endpoint = endpoint;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
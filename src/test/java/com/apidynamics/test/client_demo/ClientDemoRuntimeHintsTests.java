@@ -0,0 +1,24 @@
+package com.apidynamics.test.client_demo;
+
+import com.apidynamics.test.client_demo.entity.ApiClient;
+import com.apidynamics.test.client_demo.model.TimestampApiResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientDemoRuntimeHintsTests {
+
+	private final RuntimeHints hints = new RuntimeHints();
+
+	@Test
+	void nativeImageHintsCoverReflectionResourcesAndHmac() throws Exception {
+		new ClientDemoRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+		assertTrue(RuntimeHintsPredicates.reflection().onMethod(ApiClient.class, "getPublicKey").test(hints));
+		assertTrue(RuntimeHintsPredicates.reflection().onMethod(TimestampApiResponse.class.getMethod("timestamp")).test(hints));
+		assertTrue(RuntimeHintsPredicates.resource().forResource("templates/timestamp.html").test(hints));
+		assertTrue(RuntimeHintsPredicates.reflection().onType(Class.forName("com.sun.crypto.provider.HmacCore$HmacSHA1")).test(hints));
+	}
+}
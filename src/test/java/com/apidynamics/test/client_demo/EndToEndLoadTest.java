@@ -0,0 +1,49 @@
+package com.apidynamics.test.client_demo;
+
+import com.apidynamics.test.client_demo.support.LoadHarness;
+import com.apidynamics.test.client_demo.support.StubAdaptiveAuthServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Short run of the load harness for both TOTP strategies, on the page and on the JSON API,
+ * every TOTP sent must pass the stub's check.
+ * Flows share one client id, so a retried call can lose its credit to a concurrent flow and be challenged again,
+ * which is why the flow success threshold is not 100%.
+ * Run with ./gradlew loadTest
+ */
+@Tag("load")
+class EndToEndLoadTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = {"self", "server"})
+	void challengesAreResolvedUnderLoad(String tokenType) throws Exception {
+		LoadHarness.Report report = LoadHarness.run(new LoadHarness.Config(50, Duration.ofSeconds(5), Duration.ofSeconds(1), tokenType, false,
+				new StubAdaptiveAuthServer.Options(10, 10, 0, 0)));
+
+		System.out.printf("%s : %s%n%s : %s%n", tokenType, report.load(), tokenType, report.stub());
+
+		assertTrue(report.stub().challenges() > 0);
+		assertEquals(1.0, report.stub().challengeSuccessRate());
+		assertTrue(report.load().successRate() > 0.9);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"self", "server"})
+	void jsonApiResolvesChallengesUnderLoad(String tokenType) throws Exception {
+		LoadHarness.Report report = LoadHarness.run(new LoadHarness.Config(50, Duration.ofSeconds(5), Duration.ofSeconds(1), tokenType, false,
+				new StubAdaptiveAuthServer.Options(10, 10, 0, 0), "/api/timestamp", "prod"));
+
+		System.out.printf("api %s : %s%napi %s : %s%n", tokenType, report.load(), tokenType, report.stub());
+
+		assertTrue(report.stub().challenges() > 0);
+		assertEquals(1.0, report.stub().challengeSuccessRate());
+		assertTrue(report.load().successRate() > 0.9);
+	}
+}
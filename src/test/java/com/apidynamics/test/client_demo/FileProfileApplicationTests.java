@@ -0,0 +1,32 @@
+package com.apidynamics.test.client_demo;
+
+import com.apidynamics.test.client_demo.repository.ApiClientRepository;
+import com.apidynamics.test.client_demo.repository.FileApiClientRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "CLIENT_STORE_FILE=build/test-client-store/api-clients.log")
+@ActiveProfiles("file")
+class FileProfileApplicationTests {
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private ApiClientRepository apiClientRepository;
+
+	@Test
+	void contextLoadsWithoutJpa() {
+		assertInstanceOf(FileApiClientRepository.class, apiClientRepository);
+		assertTrue(context.getBeansOfType(EntityManagerFactory.class).isEmpty());
+		assertTrue(context.getBeansOfType(DataSource.class).isEmpty());
+	}
+}
@@ -0,0 +1,82 @@
+package com.apidynamics.test.client_demo;
+
+import com.apidynamics.test.client_demo.support.LoadGenerator;
+import com.apidynamics.test.client_demo.support.StubAdaptiveAuthServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares concurrent in-flight upstream calls with platform worker threads and with virtual threads.
+ * The /httpbin page holds its request thread for the whole upstream call, so platform workers cap the calls
+ * in flight and virtual threads lift the cap. /timestamp runs the challenge flow asynchronously and keeps
+ * more flows than workers in flight in both modes.
+ * Run with ./gradlew loadTest
+ */
+@Tag("load")
+class VirtualThreadsLoadTest {
+
+	private static final int CONCURRENCY = 200;
+	private static final int PLATFORM_WORKER_THREADS = 20;
+	private static final Duration DURATION = Duration.ofSeconds(10);
+
+	@Test
+	void virtualThreadsKeepMoreBlockingCallsInFlight() throws Exception {
+		Runs platform = run(false);
+		Runs virtual = run(true);
+
+		System.out.printf("platform threads : /httpbin peak in-flight=%d, %s%n", platform.blocking().peakInFlight(), platform.blocking().result());
+		System.out.printf("virtual threads  : /httpbin peak in-flight=%d, %s%n", virtual.blocking().peakInFlight(), virtual.blocking().result());
+		System.out.printf("platform threads : /timestamp peak in-flight=%d, %s%n", platform.async().peakInFlight(), platform.async().result());
+		System.out.printf("virtual threads  : /timestamp peak in-flight=%d, %s%n", virtual.async().peakInFlight(), virtual.async().result());
+
+		assertTrue(platform.blocking().peakInFlight() <= PLATFORM_WORKER_THREADS);
+		assertTrue(virtual.blocking().peakInFlight() > platform.blocking().peakInFlight());
+		assertTrue(virtual.blocking().result().throughput() > platform.blocking().result().throughput());
+
+		assertTrue(platform.async().result().successRate() > 0.9);
+		assertTrue(virtual.async().result().successRate() > 0.9);
+		assertTrue(platform.async().peakInFlight() > PLATFORM_WORKER_THREADS);
+		assertTrue(virtual.async().peakInFlight() > PLATFORM_WORKER_THREADS);
+	}
+
+	private static Runs run(boolean virtualThreads) throws Exception {
+		try (StubAdaptiveAuthServer stub = new StubAdaptiveAuthServer(50);
+			 ConfigurableApplicationContext context = new SpringApplicationBuilder(ClientDemoApplication.class)
+					 .properties(
+							 "server.port=0",
+							 "spring.threads.virtual.enabled=" + virtualThreads,
+							 "server.tomcat.threads.max=" + PLATFORM_WORKER_THREADS,
+							 "spring.datasource.url=jdbc:h2:mem:load-" + virtualThreads,
+							 "DEMO_SERVER_BASE_URL=" + stub.getBaseUrl(),
+							 "HTTPBIN_BASE_URL=" + stub.getBaseUrl(),
+							 "DEMO_SERVER_HTTP_MAX_CONNECTIONS=" + CONCURRENCY * 2,
+							 "DEMO_SERVER_HTTP_MAX_CONNECTIONS_PER_ROUTE=" + CONCURRENCY * 2,
+							 "logging.level.com.apidynamics.test.client_demo=WARN",
+							 "logging.level.org.springframework.web.client=WARN")
+					 .run()) {
+			String port = context.getEnvironment().getProperty("local.server.port");
+			URI httpbin = URI.create("http://localhost:" + port + "/httpbin?test=headers");
+			LoadGenerator.Result blocking = LoadGenerator.run(httpbin, CONCURRENCY, DURATION,
+					response -> response.statusCode() == 200 && response.body().contains("httpbin.org Response"));
+			Run blockingRun = new Run(stub.getPeakInFlight(), blocking);
+			stub.resetPeakInFlight();
+			URI timestamp = URI.create("http://localhost:" + port + "/timestamp?token_type=self");
+			LoadGenerator.Result async = LoadGenerator.run(timestamp, CONCURRENCY, DURATION,
+					response -> response.statusCode() == 200 && response.body().contains("Current UTC timestamp"));
+			return new Runs(blockingRun, new Run(stub.getPeakInFlight(), async));
+		}
+	}
+
+	private record Run(int peakInFlight, LoadGenerator.Result result) {
+	}
+
+	private record Runs(Run blocking, Run async) {
+	}
+}
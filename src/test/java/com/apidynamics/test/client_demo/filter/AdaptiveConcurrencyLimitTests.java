@@ -0,0 +1,81 @@
+package com.apidynamics.test.client_demo.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTests {
+
+	private static final long MS = 1_000_000;
+
+	@Test
+	void limitGrowsWhileLatencyIsStableAndShrinksWhenItClimbs() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("/timestamp", 20, 4, 200, 1.5, 0.2, 100);
+		for (int i = 0; i < 100; i++) {
+			limit.onSample(20 * MS, limit.getLimit());
+		}
+		int grown = limit.getLimit();
+		assertTrue(grown > 20, "grown to " + grown);
+
+		for (int i = 0; i < 30; i++) {
+			limit.onSample(200 * MS, limit.getLimit());
+		}
+		assertTrue(limit.getLimit() < grown / 2, "shrunk to " + limit.getLimit());
+		assertTrue(limit.getLimit() >= 4);
+	}
+
+	@Test
+	void limitDoesNotGrowWhileMostlyUnused() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("/timestamp", 20, 4, 200, 1.5, 0.2, 100);
+		for (int i = 0; i < 100; i++) {
+			limit.onSample(20 * MS, 2);
+		}
+		assertEquals(20, limit.getLimit());
+	}
+
+	@Test
+	void requestsOverTheLimitOfTheirRouteAreRejected() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, "/timestamp,/httpbin", 8, 8, 8, 1.5, 0.2, 100, new SimpleMeterRegistry());
+		AdaptiveConcurrencyLimit timestamp = limiter.route("/timestamp");
+		for (int i = 0; i < 8; i++) {
+			assertTrue(timestamp.tryAcquire());
+		}
+		ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiter);
+
+		MockHttpServletResponse rejected = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("GET", "/timestamp"), rejected, new MockFilterChain());
+		MockHttpServletResponse otherRoute = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("GET", "/httpbin"), otherRoute, new MockFilterChain());
+		MockHttpServletResponse unlimited = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("GET", "/timestamps"), unlimited, new MockFilterChain());
+
+		assertEquals(503, rejected.getStatus());
+		assertEquals("1", rejected.getHeader("Retry-After"));
+		assertEquals(200, otherRoute.getStatus());
+		assertEquals(200, unlimited.getStatus());
+		assertEquals(1L, timestamp.getRejected());
+		assertEquals(0, limiter.route("/httpbin").getInFlight());
+		assertNull(limiter.route("/timestamps"));
+	}
+
+	@Test
+	void pathVariantsOfALimitedRouteAreLimited() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, "/timestamp", 8, 8, 8, 1.5, 0.2, 100, new SimpleMeterRegistry());
+		AdaptiveConcurrencyLimit timestamp = limiter.route("/timestamp");
+		for (int i = 0; i < 8; i++) {
+			assertTrue(timestamp.tryAcquire());
+		}
+		ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiter);
+
+		for (String path : new String[]{"/timestamp;jsessionid=x", "//timestamp", "/%74imestamp", "/timestamp/;x=1"}) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			filter.doFilter(new MockHttpServletRequest("GET", path), response, new MockFilterChain());
+			assertEquals(503, response.getStatus(), path);
+		}
+		assertEquals(4L, timestamp.getRejected());
+	}
+}
@@ -0,0 +1,53 @@
+package com.apidynamics.test.client_demo.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordingAnalyzerTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void recordingIsSummarizedByStageWithTheHopsOfSlowFlows() throws Exception {
+		Path file = dir.resolve("adaptive-auth.jfr");
+		try (Recording recording = new Recording(Configuration.create(Path.of("jfr/adaptive-auth.jfc")))) {
+			recording.start();
+			for (int i = 0; i < 3; i++) {
+				String tid = "tid-" + i;
+				ChallengeFlowEvent flow = ChallengeFlowEvent.start("timestamp", "server");
+				UpstreamCallEvent.start("timestamp", URI.create("http://localhost/api/timestamp")).complete(HttpStatus.UNAUTHORIZED, 42, null);
+				TotpGenerationEvent totp = TotpGenerationEvent.start("server", tid);
+				UpstreamCallEvent.start("generateClientTotp", URI.create("http://localhost/generateClientTotp?tid=" + tid)).complete(HttpStatus.OK, 20, null);
+				totp.complete(null);
+				UpstreamCallEvent.start("validateClientTotp", URI.create("http://localhost/validateClientTotp?tid=" + tid + "&totp=123456")).complete(HttpStatus.OK, 10, null);
+				UpstreamCallEvent.start("timestamp", URI.create("http://localhost/api/timestamp")).complete(null, -1, new java.io.IOException());
+				flow.complete(tid, "SUCCESS", 1, null);
+			}
+			recording.stop();
+			recording.dump(file);
+		}
+
+		RecordingAnalyzer.Summary summary = RecordingAnalyzer.summarize(file, 2);
+
+		assertEquals(3, summary.stages().get("challenge timestamp server SUCCESS").count());
+		assertEquals(3, summary.stages().get("totp server").count());
+		assertEquals(3, summary.stages().get("upstream timestamp 401").count());
+		assertEquals(126, summary.stages().get("upstream timestamp 401").bytes());
+		assertEquals(3, summary.stages().get("upstream timestamp IO_ERROR").count());
+		assertEquals(3, summary.stages().get("upstream validateClientTotp 200").count());
+		assertEquals(2, summary.slowestFlows().size());
+		RecordingAnalyzer.SlowFlow slowest = summary.slowestFlows().get(0);
+		assertTrue(slowest.transactionId().startsWith("tid-"));
+		assertEquals(3, slowest.hops().size());
+		assertTrue(slowest.hops().get(0).startsWith("totp server"));
+	}
+}
@@ -0,0 +1,78 @@
+package com.apidynamics.test.client_demo.journal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestEventRingTests {
+
+	@Test
+	void capacityIsRoundedUpToPowerOfTwo() {
+		assertEquals(8, new RequestEventRing(5).capacity());
+		assertEquals(8192, new RequestEventRing(8192).capacity());
+	}
+
+	@Test
+	void fullRingDropsInsteadOfOverwriting() {
+		RequestEventRing ring = new RequestEventRing(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(offer(ring, i));
+		}
+		assertFalse(offer(ring, 4));
+
+		List<Integer> codes = new ArrayList<>();
+		assertEquals(4, ring.drain(event -> codes.add(event.code), 10));
+		assertEquals(List.of(0, 1, 2, 3), codes);
+		assertTrue(offer(ring, 5));
+		assertEquals(1, ring.drain(event -> codes.add(event.code), 10));
+		assertEquals(5, codes.get(4));
+	}
+
+	@Test
+	void concurrentProducersLoseNothingThatWasAccepted() throws InterruptedException {
+		RequestEventRing ring = new RequestEventRing(1024);
+		int producers = 8;
+		int perProducer = 50_000;
+		AtomicInteger accepted = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(producers);
+		for (int p = 0; p < producers; p++) {
+			int base = p * perProducer;
+			new Thread(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					if (offer(ring, base + i)) {
+						accepted.incrementAndGet();
+					}
+				}
+				done.countDown();
+			}).start();
+		}
+
+		Set<Integer> seen = new HashSet<>();
+		int[] lastPerProducer = new int[producers];
+		Arrays.fill(lastPerProducer, -1);
+		boolean[] ordered = {true};
+		while (done.getCount() > 0 || ring.size() > 0) {
+			ring.drain(event -> {
+				assertTrue(seen.add(event.code), "event drained twice");
+				int producer = event.code / perProducer;
+				ordered[0] &= event.code > lastPerProducer[producer];
+				lastPerProducer[producer] = event.code;
+			}, 256);
+		}
+
+		assertEquals(accepted.get(), seen.size());
+		assertTrue(ordered[0], "events of one producer are drained in order");
+	}
+
+	private static boolean offer(RequestEventRing ring, int code) {
+		return ring.offer(RequestEvent.Kind.REQUEST, 0, 0, "GET", "/", code, null, null);
+	}
+}
@@ -0,0 +1,38 @@
+package com.apidynamics.test.client_demo.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimestampBatchItemTests {
+
+	private static final JsonFactory JSON = new JsonFactory();
+
+	@Test
+	void readsItemsWithTheSelfStrategyByDefault() throws IOException {
+		List<TimestampBatchItem> items = read("[{\"client\":\"a\",\"token_type\":\"server\",\"extra\":[{\"client\":\"b\"}]},{\"client\":\"b\",\"token_type\":null}]");
+
+		assertEquals(List.of(new TimestampBatchItem("a", "server"), new TimestampBatchItem("b", "self")), items);
+	}
+
+	@Test
+	void rejectsClientsAndTokenTypesThatAreNotScalars() {
+		JsonParseException client = assertThrows(JsonParseException.class, () -> read("[{\"client\":{\"token_type\":\"server\"}}]"));
+		assertTrue(client.getOriginalMessage().contains("'client'"), client.getOriginalMessage());
+
+		JsonParseException tokenType = assertThrows(JsonParseException.class, () -> read("[{\"client\":\"a\",\"token_type\":[\"server\"]}]"));
+		assertTrue(tokenType.getOriginalMessage().contains("'token_type'"), tokenType.getOriginalMessage());
+	}
+
+	private static List<TimestampBatchItem> read(String json) throws IOException {
+		try (JsonParser parser = JSON.createParser(json)) {
+			return TimestampBatchItem.readAll(parser, 10);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.apidynamics.test.client_demo.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TotpBatchItemTests {
+
+	private static final JsonFactory JSON = new JsonFactory();
+
+	@Test
+	void readsItemsAndSkipsUnknownFields() throws IOException {
+		List<TotpBatchItem> items = read("[{\"key\":\"3132\",\"otp\":\"287082\",\"step\":1,\"extra\":{\"step\":2}},{\"key\":\"3132\",\"otp\":null}]");
+
+		assertEquals(List.of(new TotpBatchItem("3132", "287082", 1L), new TotpBatchItem("3132", null, null)), items);
+	}
+
+	@Test
+	void rejectsStepsThatAreNotIntegers() {
+		for (String step : List.of("\"abc\"", "true", "1.9", "[1]", "{\"v\":1}")) {
+			JsonParseException e = assertThrows(JsonParseException.class, () -> read("[{\"key\":\"3132\",\"step\":" + step + "}]"), step);
+			assertTrue(e.getOriginalMessage().contains("'step'"), e.getOriginalMessage());
+		}
+	}
+
+	@Test
+	void rejectsKeysAndOtpsThatAreNotScalars() {
+		JsonParseException key = assertThrows(JsonParseException.class, () -> read("[{\"key\":{\"otp\":\"287082\"}}]"));
+		assertTrue(key.getOriginalMessage().contains("'key'"), key.getOriginalMessage());
+
+		JsonParseException otp = assertThrows(JsonParseException.class, () -> read("[{\"key\":\"3132\",\"otp\":[\"287082\"]}]"));
+		assertTrue(otp.getOriginalMessage().contains("'otp'"), otp.getOriginalMessage());
+	}
+
+	private static List<TotpBatchItem> read(String json) throws IOException {
+		try (JsonParser parser = JSON.createParser(json)) {
+			return TotpBatchItem.readAll(parser, 10);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.apidynamics.test.client_demo.repository;
+
+import com.apidynamics.test.client_demo.entity.ApiClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileApiClientRepositoryTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void changesSurviveARestart() throws Exception {
+		Path file = tempDir.resolve("store/clients.log");
+		FileApiClientRepository repository = new FileApiClientRepository(file.toString(), true);
+		repository.save(client(1, "first-key"));
+		repository.save(client(2, "second key\nwith \\ escapes"));
+		repository.save(client(1, "first-key-updated"));
+		repository.deleteById(3);
+		repository.save(client(3, null));
+		repository.deleteById(3);
+		repository.destroy();
+
+		FileApiClientRepository reopened = new FileApiClientRepository(file.toString(), true);
+
+		assertEquals("first-key-updated", reopened.findById(1).orElseThrow().getPublicKey());
+		assertEquals("second key\nwith \\ escapes", reopened.findById(2).orElseThrow().getPublicKey());
+		assertFalse(reopened.existsById(3));
+		assertEquals(2, reopened.count());
+		reopened.destroy();
+	}
+
+	@Test
+	void tornLastRecordIsDropped() throws Exception {
+		Path file = tempDir.resolve("clients.log");
+		FileApiClientRepository repository = new FileApiClientRepository(file.toString(), false);
+		repository.save(client(1, "first-key"));
+		repository.destroy();
+		Files.writeString(file, "S 2 partial-wri", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+		FileApiClientRepository reopened = new FileApiClientRepository(file.toString(), false);
+		reopened.save(client(3, "third-key"));
+		reopened.destroy();
+
+		assertEquals("S 1 first-key\nS 3 third-key\n", Files.readString(file));
+	}
+
+	@Test
+	void staleLogIsCompacted() throws Exception {
+		Path file = tempDir.resolve("clients.log");
+		FileApiClientRepository repository = new FileApiClientRepository(file.toString(), false);
+		for (int i = 0; i < 1000; i++) {
+			repository.save(client(1, "key-" + i));
+		}
+		repository.destroy();
+
+		assertTrue(Files.readAllLines(file).size() < 64);
+		FileApiClientRepository reopened = new FileApiClientRepository(file.toString(), false);
+		assertEquals("key-999", reopened.findById(1).orElseThrow().getPublicKey());
+		reopened.destroy();
+	}
+
+	@Test
+	void failedCompactionKeepsTheCurrentLog() throws Exception {
+		Path file = tempDir.resolve("clients.log");
+		// a non-empty directory in the way of the compacted log makes every compaction fail
+		Files.createDirectories(tempDir.resolve("clients.log.compact/blocked"));
+		FileApiClientRepository repository = new FileApiClientRepository(file.toString(), true);
+		for (int i = 0; i < 100; i++) {
+			repository.save(client(1, "key-" + i));
+		}
+		repository.save(client(2, "second-key"));
+		repository.destroy();
+
+		assertEquals(101, Files.readAllLines(file).size());
+		FileApiClientRepository reopened = new FileApiClientRepository(file.toString(), false);
+		assertEquals("key-99", reopened.findById(1).orElseThrow().getPublicKey());
+		assertEquals("second-key", reopened.findById(2).orElseThrow().getPublicKey());
+		reopened.destroy();
+	}
+
+	@Test
+	void returnedClientsAreCopies() throws Exception {
+		FileApiClientRepository repository = new FileApiClientRepository(tempDir.resolve("clients.log").toString(), false);
+		repository.save(client(1, "first-key"));
+
+		repository.findById(1).orElseThrow().setPublicKey("changed");
+		repository.findAll().get(0).setPublicKey("changed");
+
+		assertEquals("first-key", repository.findById(1).orElseThrow().getPublicKey());
+		repository.destroy();
+	}
+
+	private static ApiClient client(int id, String publicKey) {
+		return ApiClient.builder().id(id).publicKey(publicKey).build();
+	}
+}
@@ -0,0 +1,37 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.model.TimestampResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChallengeResultTests {
+
+	@Test
+	void rejectedResponseWithoutErrorFieldShowsItsRawBody() {
+		TimestampResponse response = new TimestampResponse(null, null, null, null, "{\"reason\":\"blocked\"}");
+
+		assertEquals("{\"reason\":\"blocked\"}", rejected(response).error());
+	}
+
+	@Test
+	void rejectedResponseWithoutAnyDetailsShowsItsStatus() {
+		TimestampResponse response = new TimestampResponse(null, null, null, null, null);
+
+		assertEquals("no error details (status 403)", rejected(response).error());
+	}
+
+	@Test
+	void errorFieldWinsOverTheRawBody() {
+		TimestampResponse response = new TimestampResponse(null, null, null, "Forbidden", "{\"error\":\"Forbidden\"}");
+
+		assertEquals("Forbidden", rejected(response).error());
+	}
+
+	private static ChallengeResult rejected(TimestampResponse response) {
+		return new ChallengeResult(HttpStatus.FORBIDDEN, response, null, ChallengeResult.Outcome.REJECTED, 0, List.of());
+	}
+}
@@ -0,0 +1,94 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTests {
+
+	private static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+	private static final long OPEN = TimeUnit.SECONDS.toNanos(5);
+
+	private final AtomicLong clock = new AtomicLong();
+	private final List<String> transitions = new ArrayList<>();
+	private final CircuitBreaker breaker = new CircuitBreaker(0.5, 4, WINDOW, OPEN, clock::get,
+			(from, to) -> transitions.add(from + "->" + to));
+
+	@Test
+	void opensOnFailureRateOnceEnoughCalls() {
+		breaker.onResult(CircuitBreaker.PERMITTED, false);
+		breaker.onResult(CircuitBreaker.PERMITTED, false);
+		breaker.onResult(CircuitBreaker.PERMITTED, true);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+		breaker.onResult(CircuitBreaker.PERMITTED, false);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+		assertEquals(OPEN, breaker.remainingOpenNanos());
+	}
+
+	@Test
+	void failuresOfAnExpiredWindowAreForgotten() {
+		breaker.onResult(CircuitBreaker.PERMITTED, false);
+		breaker.onResult(CircuitBreaker.PERMITTED, false);
+		breaker.onResult(CircuitBreaker.PERMITTED, false);
+		clock.addAndGet(WINDOW);
+		breaker.onResult(CircuitBreaker.PERMITTED, false);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+	}
+
+	@Test
+	void singleProbeClosesOrReopens() {
+		open();
+		clock.addAndGet(OPEN);
+		long probe = breaker.tryAcquire();
+		assertTrue(probe > CircuitBreaker.PERMITTED);
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire(), "only one probe while half-open");
+		breaker.onResult(probe, false);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+		clock.addAndGet(OPEN);
+		probe = breaker.tryAcquire();
+		assertTrue(probe > CircuitBreaker.PERMITTED);
+		breaker.onResult(probe, true);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+		assertEquals(CircuitBreaker.PERMITTED, breaker.tryAcquire());
+		assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+	}
+
+	@Test
+	void onlyTheProbeResolvesHalfOpen() {
+		open();
+		clock.addAndGet(OPEN);
+		long probe = breaker.tryAcquire();
+
+		// late results of calls permitted while the circuit was closed
+		breaker.onResult(CircuitBreaker.PERMITTED, true);
+		breaker.onResult(CircuitBreaker.PERMITTED, false);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+
+		breaker.onResult(probe, true);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+	}
+
+	@Test
+	void lateFailuresDoNotMoveTheOpenTime() {
+		open();
+		clock.addAndGet(OPEN / 2);
+		breaker.onResult(CircuitBreaker.PERMITTED, false);
+		assertEquals(OPEN / 2, breaker.remainingOpenNanos());
+		clock.addAndGet(OPEN / 2);
+		assertTrue(breaker.tryAcquire() > CircuitBreaker.PERMITTED);
+	}
+
+	private void open() {
+		for (int i = 0; i < 4; i++) {
+			breaker.onResult(CircuitBreaker.PERMITTED, false);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.entity.ApiClient;
+import com.apidynamics.test.client_demo.repository.ApiClientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClientIdServiceTests {
+
+	private final AtomicReference<String> stored = new AtomicReference<>("first-key");
+	private final ApiClientRepository repository = mock(ApiClientRepository.class);
+
+	@Test
+	void unchangedClientIdKeepsItsCredential() {
+		when(repository.findById(1)).thenAnswer(invocation -> Optional.of(apiClient(stored.get())));
+		ClientIdService service = service(0);
+
+		assertSame(service.getClient(), service.getClient());
+		stored.set("second-key");
+		assertEquals("second-key", service.getClientId());
+	}
+
+	@Test
+	void reloadDoesNotOverwriteANewerSave() throws Exception {
+		CountDownLatch read = new CountDownLatch(1);
+		CountDownLatch saved = new CountDownLatch(1);
+		AtomicBoolean blocking = new AtomicBoolean();
+		when(repository.findById(1)).thenAnswer(invocation -> {
+			Optional<ApiClient> client = Optional.of(apiClient(stored.get()));
+			if (blocking.get()) {
+				// the reload read the repository before the save, it publishes once the save is cached
+				read.countDown();
+				assertTrue(saved.await(5, TimeUnit.SECONDS));
+			}
+			return client;
+		});
+		when(repository.save(any())).thenAnswer(invocation -> {
+			stored.set(invocation.<ApiClient>getArgument(0).getPublicKey());
+			return invocation.getArgument(0);
+		});
+		ClientIdService service = service(0);
+		service.getClient();
+		blocking.set(true);
+
+		CompletableFuture<String> reloaded = CompletableFuture.supplyAsync(service::getClientId);
+		assertTrue(read.await(5, TimeUnit.SECONDS));
+		ReflectionTestUtils.setField(service, "clientIdCacheTtlMs", 60_000L);
+		service.saveClientId("saved-key");
+		saved.countDown();
+
+		assertEquals("saved-key", reloaded.get(5, TimeUnit.SECONDS));
+		assertEquals("saved-key", service.getClientId());
+	}
+
+	private ClientIdService service(long ttlMs) {
+		ClientIdService service = new ClientIdService(repository);
+		ReflectionTestUtils.setField(service, "apiDynamicsClientId", "default-key");
+		ReflectionTestUtils.setField(service, "clientIdCacheTtlMs", ttlMs);
+		return service;
+	}
+
+	private static ApiClient apiClient(String publicKey) {
+		return ApiClient.builder().id(1).publicKey(publicKey).build();
+	}
+}
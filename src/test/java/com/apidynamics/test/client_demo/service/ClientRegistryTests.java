@@ -0,0 +1,159 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.entity.ApiClient;
+import com.apidynamics.test.client_demo.model.ClientCredential;
+import com.apidynamics.test.client_demo.repository.ApiClientRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClientRegistryTests {
+
+	private static final String DEFAULT_CLIENT = "default-public-key";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void findsClientsByPublicKeyOrId() {
+		ClientRegistry registry = registry(List.of(apiClient(1, "first-key"), apiClient(7, "seventh-key")), "");
+
+		assertEquals(7, registry.find("seventh-key").id());
+		assertEquals("first-key", registry.find("1").publicKey());
+		assertSame(registry.find("7").totpKey(), registry.find("seventh-key").totpKey());
+		assertNull(registry.find("unknown-key"));
+		assertNull(registry.find("2"));
+		assertThrows(UnknownClientException.class, () -> registry.get("unknown-key"));
+	}
+
+	@Test
+	void registersDefaultClientWhenRepositoryHasNone() {
+		ClientRegistry registry = registry(List.of(apiClient(2, "second-key")), "");
+
+		assertEquals(1, registry.find(DEFAULT_CLIENT).id());
+		assertEquals(2, registry.getStats().get("clients"));
+	}
+
+	@Test
+	void fileEntriesOverrideRepositoryRows() throws Exception {
+		Path file = tempDir.resolve("clients.csv");
+		Files.writeString(file, "# id,publicKey\n\n2,file-key\n3, third-key \n");
+		ClientRegistry registry = registry(List.of(apiClient(1, "first-key"), apiClient(2, "second-key")), file.toString());
+
+		assertEquals(2, registry.find("file-key").id());
+		assertNull(registry.find("second-key"));
+		assertEquals(3, registry.find("third-key").id());
+	}
+
+	@Test
+	void rejectsInvalidFileEntries() throws Exception {
+		Path file = tempDir.resolve("clients.csv");
+		Files.writeString(file, "2,file-key\nnot-an-id,key\n");
+
+		assertThrows(IllegalArgumentException.class, () -> registry(List.of(), file.toString()));
+	}
+
+	@Test
+	void reloadSwapsTheWholeRegistry() {
+		ApiClientRepository repository = mock(ApiClientRepository.class);
+		when(repository.findAll()).thenReturn(List.of(apiClient(1, "old-key")), List.of(apiClient(1, "new-key")));
+		ClientRegistry registry = registry(repository, "");
+		ClientCredential old = registry.find("old-key");
+
+		assertEquals(1, registry.reload());
+
+		assertNull(registry.find("old-key"));
+		assertEquals(1, registry.find("new-key").id());
+		assertEquals("old-key", old.publicKey());
+	}
+
+	@Test
+	void estimateCountsPooledMacSlots() throws Exception {
+		ClientRegistry registry = registry(List.of(apiClient(1, "first-key")), "");
+		ClientCredential client = registry.find("first-key");
+		long empty = (long) registry.getStats().get("estimatedBytes");
+
+		new TOTPEngine().generate(client.totpKey(), 1);
+		assertEquals(empty + TOTPEngine.Key.SLOT_BYTES, (long) registry.getStats().get("estimatedBytes"));
+
+		Thread[] threads = new Thread[32];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = Thread.ofPlatform().start(() -> {
+				TOTPEngine engine = new TOTPEngine();
+				for (int step = 0; step < 1000; step++) {
+					engine.generate(client.totpKey(), step);
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(client.totpKey().pooledBytes() <= 4L * TOTPEngine.Key.SLOT_BYTES);
+	}
+
+	/**
+	 * Retained heap of a 100k clients registry, measured after GC and compared with the registry's own estimate
+	 */
+	@Test
+	@Tag("load")
+	void registryFootprintPerClient() {
+		int clients = 100_000;
+		ApiClientRepository repository = mock(ApiClientRepository.class);
+		// rows are built on each read, so only the registry retains them
+		when(repository.findAll()).thenAnswer(invocation -> {
+			List<ApiClient> apiClients = new ArrayList<>(clients);
+			for (int i = 0; i < clients; i++) {
+				// same length as a real base64 public key
+				apiClients.add(apiClient(i + 1, String.format("%-108s", "client-" + i).replace(' ', 'x')));
+			}
+			return apiClients;
+		});
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long before = usedHeapAfterGc(memory);
+		ClientRegistry registry = registry(repository, "");
+		long retained = usedHeapAfterGc(memory) - before;
+
+		long estimated = (long) registry.getStats().get("estimatedBytes");
+		System.out.printf("client registry : %d clients, measured %d bytes/client, estimated %d bytes/client%n",
+				clients, retained / clients, estimated / clients);
+		assertNotNull(registry.find("1"));
+		assertTrue(retained / clients < 512);
+	}
+
+	private static long usedHeapAfterGc(MemoryMXBean memory) {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	private static ClientRegistry registry(List<ApiClient> apiClients, String file) {
+		ApiClientRepository repository = mock(ApiClientRepository.class);
+		when(repository.findAll()).thenReturn(apiClients);
+		return registry(repository, file);
+	}
+
+	private static ClientRegistry registry(ApiClientRepository repository, String file) {
+		ClientRegistry registry = new ClientRegistry(repository);
+		ReflectionTestUtils.setField(registry, "apiDynamicsClientId", DEFAULT_CLIENT);
+		ReflectionTestUtils.setField(registry, "registryFile", file);
+		registry.load();
+		return registry;
+	}
+
+	private static ApiClient apiClient(int id, String publicKey) {
+		return ApiClient.builder().id(id).publicKey(publicKey).build();
+	}
+}
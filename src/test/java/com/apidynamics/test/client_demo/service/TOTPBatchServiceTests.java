@@ -0,0 +1,134 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.model.TotpBatchItem;
+import com.apidynamics.test.client_demo.model.TotpBatchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TOTPBatchServiceTests {
+
+	// RFC 6238 SHA1 seed "12345678901234567890", "287082" at step 1
+	private static final String RFC_KEY = "3132333435363738393031323334353637383930";
+
+	private final TOTPEngine engine = new TOTPEngine();
+	private final TOTPBatchService service = new TOTPBatchService(4, 16, 10_000, 1, new TOTPReplayStore(false, 1, 1));
+
+	@AfterEach
+	void tearDown() {
+		service.destroy();
+	}
+
+	@Test
+	void validatesOverTheDriftWindow() {
+		List<TotpBatchResult> results = service.process(List.of(
+				new TotpBatchItem(RFC_KEY, "287082", 1L),
+				new TotpBatchItem(RFC_KEY, "287082", 0L),
+				new TotpBatchItem(RFC_KEY, "287082", 2L),
+				new TotpBatchItem(RFC_KEY, "287082", 3L),
+				new TotpBatchItem(RFC_KEY, "28708", 1L)));
+
+		assertEquals(TotpBatchResult.validated(0, true, 0), results.get(0));
+		assertEquals(TotpBatchResult.validated(1, true, 1), results.get(1));
+		assertEquals(TotpBatchResult.validated(2, true, -1), results.get(2));
+		assertEquals(TotpBatchResult.validated(3, false, null), results.get(3));
+		assertEquals(TotpBatchResult.validated(4, false, null), results.get(4));
+	}
+
+	@Test
+	void generatesAndReportsInvalidItems() {
+		List<TotpBatchResult> results = service.process(List.of(
+				new TotpBatchItem(RFC_KEY, null, 1L),
+				new TotpBatchItem(null, "287082", 1L),
+				new TotpBatchItem("not-hex", null, null),
+				new TotpBatchItem(RFC_KEY, null, -1L)));
+
+		assertEquals(TotpBatchResult.generated(0, "287082"), results.get(0));
+		assertEquals("key is required", results.get(1).error());
+		assertEquals("key is not HEX", results.get(2).error());
+		assertNotNull(results.get(3).error());
+	}
+
+	@Test
+	void parallelResultsKeepItemOrder() {
+		List<TotpBatchItem> items = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			String key = String.format("%040x", i % 300);
+			long step = 1000 + i;
+			items.add(i % 2 == 0 ? new TotpBatchItem(key, null, step) : new TotpBatchItem(key, engine.generateString(engine.hexKey(key), step), step));
+		}
+
+		List<TotpBatchResult> results = service.process(items);
+
+		assertEquals(items.size(), results.size());
+		for (int i = 0; i < results.size(); i++) {
+			TotpBatchItem item = items.get(i);
+			TotpBatchResult result = results.get(i);
+			assertEquals(i, result.index());
+			if (item.otp() == null) {
+				assertEquals(engine.generateString(engine.hexKey(item.key()), item.step()), result.otp());
+			} else {
+				assertEquals(TotpBatchResult.validated(i, true, 0), result);
+			}
+		}
+	}
+
+	@Test
+	void currentOtpsAreConsumedOnceWithReplayProtection() {
+		TOTPBatchService protectedService = new TOTPBatchService(1, 16, 100, 1, new TOTPReplayStore(true, 100, 1));
+		String otp = engine.generateString(engine.hexKey(RFC_KEY), TOTPEngine.currentStep());
+		try {
+			List<TotpBatchResult> results = protectedService.process(List.of(
+					new TotpBatchItem(RFC_KEY, otp, null),
+					new TotpBatchItem(RFC_KEY, otp, null)));
+
+			assertEquals(Boolean.TRUE, results.get(0).valid());
+			assertEquals(TotpBatchResult.rejected(1, "OTP already used"), results.get(1));
+		} finally {
+			protectedService.destroy();
+		}
+	}
+
+	@Test
+	void explicitStepsAndOtherKeyEncodingsAreReplays() {
+		TOTPBatchService protectedService = new TOTPBatchService(1, 16, 100, 1, new TOTPReplayStore(true, 100, 1));
+		String key = "3132333435363738393031323334353637383930abcdef";
+		long step = TOTPEngine.currentStep();
+		String otp = engine.generateString(engine.hexKey(key), step);
+		try {
+			List<TotpBatchResult> results = protectedService.process(List.of(
+					new TotpBatchItem(key, otp, step),
+					new TotpBatchItem(key, otp, step),
+					new TotpBatchItem(key, otp, null),
+					new TotpBatchItem(key.toUpperCase(), otp, null),
+					new TotpBatchItem(key + "00", otp, step + 1),
+					new TotpBatchItem(RFC_KEY, "287082", 1L),
+					new TotpBatchItem(RFC_KEY, "287082", 1L)));
+
+			assertEquals(TotpBatchResult.validated(0, true, 0), results.get(0));
+			assertEquals(TotpBatchResult.rejected(1, "OTP already used"), results.get(1));
+			assertEquals(TotpBatchResult.rejected(2, "OTP already used"), results.get(2));
+			assertEquals(TotpBatchResult.rejected(3, "OTP already used"), results.get(3));
+			assertEquals(TotpBatchResult.rejected(4, "OTP already used"), results.get(4));
+			// steps long gone are checks, nothing to consume
+			assertEquals(TotpBatchResult.validated(5, true, 0), results.get(5));
+			assertEquals(TotpBatchResult.validated(6, true, 0), results.get(6));
+		} finally {
+			protectedService.destroy();
+		}
+	}
+
+	@Test
+	void rejectsOversizedBatches() {
+		List<TotpBatchItem> items = new ArrayList<>();
+		for (int i = 0; i <= 10_000; i++) {
+			items.add(new TotpBatchItem(RFC_KEY, null, null));
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> service.process(items));
+	}
+}
@@ -0,0 +1,119 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.model.ClientCredential;
+import org.apache.commons.codec.binary.Base32;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TOTPEngineTests {
+
+	// RFC 6238 SHA1 seed "12345678901234567890"
+	private static final String RFC_KEY = "3132333435363738393031323334353637383930";
+
+	private final TOTPEngine engine = new TOTPEngine();
+
+	@Test
+	void matchesRfc6238Vectors() {
+		assertEquals("287082", engine.generateString(engine.hexKey(RFC_KEY), 59L / 30));
+		assertEquals("081804", engine.generateString(engine.hexKey(RFC_KEY), 1111111109L / 30));
+		assertEquals("050471", engine.generateString(engine.hexKey(RFC_KEY), 1111111111L / 30));
+		assertEquals("005924", engine.generateString(engine.hexKey(RFC_KEY), 1234567890L / 30));
+		assertEquals("279037", engine.generateString(engine.hexKey(RFC_KEY), 2000000000L / 30));
+		assertEquals("353130", engine.generateString(engine.hexKey(RFC_KEY), 20000000000L / 30));
+	}
+
+	@Test
+	void matchesFormerImplementationForRandomKeys() throws Exception {
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder key = new StringBuilder();
+			int length = 1 + random.nextInt(96);
+			for (int j = 0; j < length; j++) {
+				key.append("0123456789abcdefABCDEF".charAt(random.nextInt(22)));
+			}
+			long step = random.nextLong() >>> 1;
+			assertEquals(formerOTP(step, key.toString()), engine.generateString(engine.hexKey(key.toString()), step), key.toString());
+		}
+	}
+
+	@Test
+	void secretKeyMatchesFormerBase32HexDerivation() throws Exception {
+		String clientId = "UWhNbjd4cnFzYVU0XzdwQWdsQ3QzUnZDa2l3eW4yaUVOWk9XS2V4aFgzVDNlWFVESnByR2lBZFZ6eEx0RW4ySm12RHRxVGJYSlRQdFNORmhMbE1NTGc=";
+		Base32 base32 = new Base32();
+		String hexKey = Hex.encodeHexString(base32.decode(base32.encode(clientId.getBytes(StandardCharsets.UTF_8))));
+		long step = TOTPEngine.currentStep();
+		assertEquals(formerOTP(step, hexKey), engine.generateString(engine.secretKey(clientId), step));
+	}
+
+	@Test
+	void credentialKeyMatchesSecretKey() {
+		String clientId = "UWhNbjd4cnFzYVU0XzdwQWdsQ3QzUnZDa2l3eW4yaUVOWk9XS2V4aFgzVDNlWFVESnByR2lBZFZ6eEx0RW4ySm12RHRxVGJYSlRQdFNORmhMbE1NTGc=";
+		ClientCredential client = ClientCredential.of(1, clientId);
+		long step = TOTPEngine.currentStep();
+		assertEquals(engine.generateString(engine.secretKey(clientId), step), engine.generateString(client.totpKey(), step));
+	}
+
+	@Test
+	void fullCacheEvictsOldestKeysOnly() {
+		TOTPEngine.Key oldest = engine.hexKey("00");
+		TOTPEngine.Key recent = null;
+		for (int i = 1; i <= 4096; i++) {
+			recent = engine.hexKey(Integer.toHexString(i << 8));
+		}
+		assertSame(recent, engine.hexKey(Integer.toHexString(4096 << 8)));
+		assertSame(engine.hexKey(Integer.toHexString(4095 << 8)), engine.hexKey(Integer.toHexString(4095 << 8)));
+		assertNotSame(oldest, engine.hexKey("00"));
+	}
+
+	@Test
+	void validatesCurrentAndPreviousStepOnly() {
+		TOTPEngine.Key key = engine.hexKey(RFC_KEY);
+		long step = 1000;
+		assertTrue(engine.validate(key, step, engine.generateString(key, step)));
+		assertTrue(engine.validate(key, step, engine.generateString(key, step - 1)));
+		assertFalse(engine.validate(key, step, engine.generateString(key, step - 2)));
+		assertFalse(engine.validate(key, step, engine.generateString(key, step + 1)));
+		assertFalse(engine.validate(key, step, null));
+		assertFalse(engine.validate(key, step, "12345"));
+	}
+
+	@Test
+	void rejectsNegativeStep() {
+		assertThrows(IllegalArgumentException.class, () -> engine.generate(engine.hexKey(RFC_KEY), -1));
+	}
+
+	/**
+	 * Reference copy of the former TOTPService.getOTP(step, key)
+	 */
+	private static String formerOTP(long step, String key) throws Exception {
+		String steps = Long.toHexString(step).toUpperCase();
+		while (steps.length() < 16) {
+			steps = "0" + steps;
+		}
+		Mac hmac = Mac.getInstance("HmacSHA1");
+		hmac.init(new SecretKeySpec(formerHexStr2Bytes(key), "RAW"));
+		byte[] hash = hmac.doFinal(formerHexStr2Bytes(steps));
+		int offset = hash[hash.length - 1] & 0xf;
+		int binary = ((hash[offset] & 0x7f) << 24) | ((hash[offset + 1] & 0xff) << 16) | ((hash[offset + 2] & 0xff) << 8) | (hash[offset + 3] & 0xff);
+		String result = Integer.toString(binary % 1000000);
+		while (result.length() < 6) {
+			result = "0" + result;
+		}
+		return result;
+	}
+
+	private static byte[] formerHexStr2Bytes(String hex) {
+		byte[] bArray = new BigInteger("10" + hex, 16).toByteArray();
+		byte[] ret = new byte[bArray.length - 1];
+		System.arraycopy(bArray, 1, ret, 0, ret.length);
+		return ret;
+	}
+}
@@ -0,0 +1,139 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.apidynamics.test.client_demo.service.TOTPReplayStore.Result.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TOTPReplayStoreTests {
+
+	private final AtomicLong step = new AtomicLong(1000);
+
+	@Test
+	void otpIsAcceptedOncePerClientAndStep() {
+		TOTPReplayStore store = new TOTPReplayStore(true, 1000, 1, step::get);
+
+		assertEquals(FIRST_USE, store.markUsed("client-a", 1000, "123456"));
+		assertEquals(REPLAY, store.markUsed("client-a", 1000, "123456"));
+		assertEquals(FIRST_USE, store.markUsed("client-b", 1000, "123456"));
+		assertEquals(FIRST_USE, store.markUsed("client-a", 999, "123456"));
+		assertEquals(FIRST_USE, store.markUsed("client-a", 1000, "654321"));
+		assertEquals(1L, store.getStats().get("replays"));
+		assertEquals(4L, store.getStats().get("entries"));
+	}
+
+	@Test
+	void expiredStepsAreDroppedWithTheirBucket() {
+		TOTPReplayStore store = new TOTPReplayStore(true, 1000, 1, step::get);
+		assertEquals(FIRST_USE, store.markUsed("client-a", 999, "123456"));
+		assertEquals(FIRST_USE, store.markUsed("client-a", 1000, "111111"));
+
+		step.set(1001);
+		assertEquals(OUT_OF_WINDOW, store.markUsed("client-a", 999, "123456"));
+		assertEquals(REPLAY, store.markUsed("client-a", 1000, "111111"));
+
+		// step 1002 takes the slot of step 999
+		step.set(1002);
+		assertEquals(FIRST_USE, store.markUsed("client-a", 1002, "123456"));
+		assertEquals(2L, store.getStats().get("entries"));
+	}
+
+	@Test
+	void fullBucketsStillDetectReplays() {
+		TOTPReplayStore store = new TOTPReplayStore(true, 6, 1, step::get);
+
+		assertEquals(FIRST_USE, store.markUsed("client-a", 1000, "000001"));
+		assertEquals(FIRST_USE, store.markUsed("client-a", 1000, "000002"));
+		assertEquals(FULL, store.markUsed("client-a", 1000, "000003"));
+		assertEquals(REPLAY, store.markUsed("client-a", 1000, "000001"));
+		assertEquals(FIRST_USE, store.markUsed("client-a", 1001, "000003"));
+		assertEquals(6L, store.getStats().get("maxEntries"));
+	}
+
+	@Test
+	void disabledStoreRecordsNothing() {
+		TOTPReplayStore store = new TOTPReplayStore(false, 1000, 1, step::get);
+
+		assertEquals(FIRST_USE, store.markUsed("client-a", 1000, "123456"));
+		assertEquals(FIRST_USE, store.markUsed("client-a", 1000, "123456"));
+	}
+
+	@Test
+	void keyEncodingsOfOneKeyAreOneClient() {
+		TOTPReplayStore store = new TOTPReplayStore(true, 1000, 1, step::get);
+		TOTPEngine engine = new TOTPEngine();
+
+		assertEquals(FIRST_USE, store.markUsed(engine.hexKey("abcdef0123"), 1000, "123456"));
+		assertEquals(REPLAY, store.markUsed(engine.hexKey("ABCDEF0123"), 1000, "123456"));
+		assertEquals(REPLAY, store.markUsed(engine.hexKey("abcdef012300"), 1000, "123456"));
+		assertEquals(FIRST_USE, store.markUsed(engine.hexKey("00abcdef0123"), 1000, "123456"));
+	}
+
+	@Test
+	void racingUsesOfANewStepShareOneBucket() throws Exception {
+		TOTPReplayStore store = new TOTPReplayStore(true, 300_000, 1, step::get);
+		assertEquals(FIRST_USE, store.markUsed("client-a", 999, "123456"));
+		step.set(1001);
+		int threads = 8;
+		AtomicInteger firstUses = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				// step 1002 takes the slot of step 999
+				if (store.markUsed("client-a", 1002, "654321") == FIRST_USE) {
+					firstUses.incrementAndGet();
+				}
+			});
+			workers[t].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		assertEquals(1, firstUses.get());
+		assertEquals(1L, store.getStats().get("entries"));
+	}
+
+	@Test
+	void concurrentUsesOfOneOtpHaveASingleWinner() throws Exception {
+		TOTPReplayStore store = new TOTPReplayStore(true, 300_000, 1, step::get);
+		int threads = 8;
+		int otps = 20_000;
+		AtomicInteger firstUses = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < otps; i++) {
+					if (store.markUsed("client-" + (i % 7), 999 + i % 3, String.format("%06d", i)) == FIRST_USE) {
+						firstUses.incrementAndGet();
+					}
+				}
+			});
+			workers[t].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		assertEquals(otps, firstUses.get());
+		assertEquals((long) otps * (threads - 1), store.getStats().get("replays"));
+	}
+}
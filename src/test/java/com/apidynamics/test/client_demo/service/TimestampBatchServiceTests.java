@@ -0,0 +1,93 @@
+package com.apidynamics.test.client_demo.service;
+
+import com.apidynamics.test.client_demo.model.TimestampBatchResult;
+import com.apidynamics.test.client_demo.model.TimestampResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimestampBatchServiceTests {
+
+	private final TimestampBatchService service = new TimestampBatchService(null, null, null, 2, 5_000, 100);
+
+	@Test
+	void runsFlowsWithBoundedParallelism() throws InterruptedException {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<TimestampBatchService.Flow> flows = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			flows.add(new TimestampBatchService.Flow(i, Integer.toString(i), "self", () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				Executor later = CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS);
+				return CompletableFuture.supplyAsync(() -> {
+					running.decrementAndGet();
+					return success();
+				}, later);
+			}, null, null));
+		}
+		List<TimestampBatchResult> results = new ArrayList<>();
+
+		TimestampBatchService.Summary summary = service.run(flows, null, results::add);
+
+		assertEquals(new TimestampBatchService.Summary(8, 8, 0, 0, summary.durationNanos()), summary);
+		assertTrue(maxRunning.get() <= 2, "at most 2 flows at a time, got " + maxRunning.get());
+		results.sort(Comparator.comparingInt(TimestampBatchResult::index));
+		for (int i = 0; i < 8; i++) {
+			TimestampBatchResult result = results.get(i);
+			assertEquals(i, result.index());
+			assertEquals("SUCCESS", result.outcome());
+			assertEquals(200, result.status());
+			assertEquals("2024-01-01T00:00:00Z", result.timestamp());
+			assertEquals(Map.of("upstream", 3_000L, "totp", 1_000L), result.stageNanos());
+		}
+		assertEquals(8L, service.getStats().get("succeeded"));
+	}
+
+	@Test
+	void reportsFlowsLeftAtTheDeadline() throws InterruptedException {
+		List<TimestampBatchService.Flow> flows = List.of(
+				new TimestampBatchService.Flow(0, "1", "self", () -> CompletableFuture.completedFuture(success()), null, null),
+				new TimestampBatchService.Flow(1, "2", "server", CompletableFuture::new, null, null),
+				TimestampBatchService.Flow.failed(2, "unknown", "self", TimestampBatchResult.UNKNOWN_CLIENT, "Unknown client unknown"),
+				new TimestampBatchService.Flow(3, "3", "self", () -> CompletableFuture.failedFuture(new IllegalStateException("boom")), null, null));
+		List<TimestampBatchResult> results = new ArrayList<>();
+
+		TimestampBatchService.Summary summary = service.run(flows, Duration.ofMillis(100), results::add);
+
+		assertEquals(4, summary.items());
+		assertEquals(1, summary.succeeded());
+		assertEquals(2, summary.failed());
+		assertEquals(1, summary.deadlineExceeded());
+		assertTrue(summary.durationNanos() < TimeUnit.SECONDS.toNanos(2), "batch must end at its deadline");
+		results.sort(Comparator.comparingInt(TimestampBatchResult::index));
+		assertEquals("SUCCESS", results.get(0).outcome());
+		assertEquals(TimestampBatchResult.DEADLINE_EXCEEDED, results.get(1).outcome());
+		assertEquals(TimestampBatchResult.UNKNOWN_CLIENT, results.get(2).outcome());
+		assertEquals(TimestampBatchResult.ERROR, results.get(3).outcome());
+		assertEquals("boom", results.get(3).error());
+	}
+
+	@Test
+	void requestedDeadlinesAreCapped() {
+		assertEquals(Duration.ofMillis(5_000), service.deadline(null));
+		assertEquals(Duration.ofMillis(100), service.deadline(Duration.ofMillis(100)));
+		assertEquals(Duration.ofMillis(5_000), service.deadline(Duration.ofMinutes(1)));
+	}
+
+	private static ChallengeResult success() {
+		return new ChallengeResult(HttpStatus.OK, new TimestampResponse("2024-01-01T00:00:00Z", null, null, null, null), null,
+				ChallengeResult.Outcome.SUCCESS, 1, List.of(new ChallengeResult.Stage("upstream", 1_000),
+				new ChallengeResult.Stage("totp", 1_000), new ChallengeResult.Stage("upstream", 2_000)));
+	}
+}
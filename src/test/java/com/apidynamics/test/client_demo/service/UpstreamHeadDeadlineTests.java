@@ -0,0 +1,74 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamHeadDeadlineTests {
+
+	@Test
+	void lateHeadAbortsTheRequest() {
+		UpstreamHeadDeadline deadline = new UpstreamHeadDeadline(Duration.ofMillis(20));
+		CountDownLatch aborted = new CountDownLatch(1);
+
+		boolean headReceived = deadline.run(() -> {
+			UpstreamHeadDeadline.requestCreated(aborted::countDown);
+			await(aborted);
+			return deadline.headReceived();
+		});
+
+		assertFalse(headReceived);
+		assertTrue(deadline.isExpired());
+	}
+
+	@Test
+	void headInTimeDisarmsTheDeadline() throws Exception {
+		UpstreamHeadDeadline deadline = new UpstreamHeadDeadline(Duration.ofMillis(20));
+		AtomicBoolean aborted = new AtomicBoolean();
+
+		assertTrue(deadline.run(() -> {
+			UpstreamHeadDeadline.requestCreated(() -> aborted.set(true));
+			return deadline.headReceived();
+		}));
+		Thread.sleep(100);
+
+		assertFalse(aborted.get());
+		assertFalse(deadline.isExpired());
+	}
+
+	@Test
+	void bodyIsReadWithTheStaticTimeout() {
+		Duration adaptive = Duration.ofMillis(250);
+		UpstreamHeadDeadline deadline = new UpstreamHeadDeadline(adaptive);
+
+		UpstreamRequestTimeout.with(adaptive, () -> {
+			assertNull(deadline.run(UpstreamRequestTimeout::current));
+			assertEquals(adaptive, UpstreamRequestTimeout.current());
+			return null;
+		});
+	}
+
+	@Test
+	void requestsOutsideOfAStreamedCallAreNotArmed() throws Exception {
+		AtomicBoolean aborted = new AtomicBoolean();
+
+		UpstreamHeadDeadline.requestCreated(() -> aborted.set(true));
+		Thread.sleep(50);
+
+		assertFalse(aborted.get());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
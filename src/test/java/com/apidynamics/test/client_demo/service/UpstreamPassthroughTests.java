@@ -0,0 +1,48 @@
+package com.apidynamics.test.client_demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamPassthroughTests {
+
+	@Test
+	void statusSelectedHeadersAndBodyAreRelayed() throws Exception {
+		UpstreamPassthrough passthrough = new UpstreamPassthrough("Content-Type, etag,Transfer-Encoding", 1024, 4);
+		byte[] body = new byte[10_000];
+		new Random(42).nextBytes(body);
+		MockClientHttpResponse source = new MockClientHttpResponse(body, HttpStatus.PARTIAL_CONTENT);
+		source.getHeaders().add("Content-Type", "application/octet-stream");
+		source.getHeaders().add("ETag", "\"abc\"");
+		source.getHeaders().add("Transfer-Encoding", "chunked");
+		source.getHeaders().add("Set-Cookie", "session=1");
+		MockHttpServletResponse target = new MockHttpServletResponse();
+
+		assertEquals(body.length, passthrough.copy(source, target));
+
+		assertEquals(206, target.getStatus());
+		assertEquals("application/octet-stream", target.getContentType());
+		assertEquals("\"abc\"", target.getHeader("ETag"));
+		assertNull(target.getHeader("Transfer-Encoding"));
+		assertNull(target.getHeader("Set-Cookie"));
+		assertArrayEquals(body, target.getContentAsByteArray());
+	}
+
+	@Test
+	void buffersAreReusedBetweenCopies() throws Exception {
+		UpstreamPassthrough passthrough = new UpstreamPassthrough("Content-Type", 256, 1);
+		for (int i = 0; i < 10; i++) {
+			passthrough.copy(new MockClientHttpResponse(new byte[1000], HttpStatus.OK), new MockHttpServletResponse());
+		}
+
+		assertEquals(10L, passthrough.getStats().get("responses"));
+		assertEquals(10_000L, passthrough.getStats().get("bytes"));
+		assertEquals(1L, passthrough.getStats().get("bufferAllocations"));
+		assertEquals(1, passthrough.getStats().get("pooledBuffers"));
+	}
+}
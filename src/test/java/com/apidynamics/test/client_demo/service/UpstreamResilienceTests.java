@@ -0,0 +1,197 @@
+package com.apidynamics.test.client_demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.util.Pair;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamResilienceTests {
+
+	private static final UpstreamCall TIMESTAMP = new UpstreamCall("timestamp", URI.create("http://localhost/api/timestamp"), new HttpHeaders());
+	private static final Pair<HttpStatusCode, String> PRIMARY = Pair.of(HttpStatus.OK, "primary");
+	private static final Pair<HttpStatusCode, String> HEDGE = Pair.of(HttpStatus.OK, "hedge");
+
+	private final UpstreamResilience resilience = new UpstreamResilience(new SimpleMeterRegistry());
+	private final List<CompletableFuture<Pair<HttpStatusCode, String>>> attempts = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(resilience, "enabled", true);
+		ReflectionTestUtils.setField(resilience, "maxTimeoutMs", 10_000L);
+		ReflectionTestUtils.setField(resilience, "minTimeoutMs", 250L);
+		ReflectionTestUtils.setField(resilience, "timeoutMultiplier", 4.0);
+		ReflectionTestUtils.setField(resilience, "hedgingEnabled", true);
+		ReflectionTestUtils.setField(resilience, "hedgeEndpoints", new String[]{"timestamp"});
+		ReflectionTestUtils.setField(resilience, "hedgeMaxRatio", 1.0);
+		ReflectionTestUtils.setField(resilience, "circuitFailureRate", 0.5);
+		ReflectionTestUtils.setField(resilience, "circuitMinCalls", 4);
+		ReflectionTestUtils.setField(resilience, "circuitWindowMs", 10_000L);
+		ReflectionTestUtils.setField(resilience, "circuitOpenMs", 10_000L);
+	}
+
+	@Test
+	void timeoutFollowsTheP99WithinBounds() {
+		assertEquals(Duration.ofSeconds(10), timeoutOfNextCall(), "no latency known yet");
+		for (int i = 1; i < LatencyWindow.MIN_SAMPLES; i++) {
+			timeoutOfNextCall();
+		}
+		assertEquals(Duration.ofMillis(250), timeoutOfNextCall(), "fast calls, floor");
+
+		// 64th sample, p99 recomputed with slow calls in the window
+		while ((long) stats().get("samples") < 64) {
+			resilience.execute(TIMESTAMP, timeout -> {
+				sleep(20);
+				return PRIMARY;
+			});
+		}
+		Duration timeout = timeoutOfNextCall();
+		assertTrue(timeout.toMillis() >= 80 && timeout.toMillis() < 10_000, "p99 x 4, got " + timeout);
+
+		ReflectionTestUtils.setField(resilience, "minTimeoutMs", 10L);
+		ReflectionTestUtils.setField(resilience, "maxTimeoutMs", 50L);
+		assertEquals(Duration.ofMillis(50), timeoutOfNextCall(), "ceiling");
+	}
+
+	@Test
+	void hedgeWinsOverASlowPrimary() throws Exception {
+		warmUp();
+
+		CompletableFuture<Pair<HttpStatusCode, String>> response = resilience.executeAsync(TIMESTAMP,
+				timeout -> attempt(attempts.isEmpty() ? new CompletableFuture<>() : CompletableFuture.completedFuture(HEDGE)));
+
+		assertEquals(HEDGE, response.get(5, TimeUnit.SECONDS));
+		assertEquals(2, attempts.size());
+		assertEquals(1L, stats().get("hedges"));
+		awaitStat("hedgeWins", 1L);
+	}
+
+	@Test
+	void failsOnlyOnceEveryAttemptFailed() throws Exception {
+		warmUp();
+		CompletableFuture<Pair<HttpStatusCode, String>> primary = new CompletableFuture<>();
+		CompletableFuture<Pair<HttpStatusCode, String>> hedge = new CompletableFuture<>();
+
+		CompletableFuture<Pair<HttpStatusCode, String>> response = resilience.executeAsync(TIMESTAMP,
+				timeout -> attempt(attempts.isEmpty() ? primary : hedge));
+		awaitAttempts(2);
+		primary.completeExceptionally(new IllegalStateException("primary failed"));
+		assertFalse(response.isDone(), "hedge still pending");
+
+		hedge.completeExceptionally(new IllegalStateException("hedge failed"));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+		assertEquals("hedge failed", e.getCause().getMessage());
+	}
+
+	@Test
+	void noHedgeBeyondTheBudget() throws Exception {
+		ReflectionTestUtils.setField(resilience, "hedgeMaxRatio", 0.0);
+		warmUp();
+		CompletableFuture<Pair<HttpStatusCode, String>> primary = new CompletableFuture<>();
+
+		CompletableFuture<Pair<HttpStatusCode, String>> response = resilience.executeAsync(TIMESTAMP, timeout -> attempt(primary));
+		sleep(50);
+		primary.complete(PRIMARY);
+
+		assertEquals(PRIMARY, response.get(5, TimeUnit.SECONDS));
+		assertEquals(1, attempts.size());
+		assertEquals(0L, stats().get("hedges"));
+	}
+
+	@Test
+	void halfOpenProbeIsNotHedged() throws Exception {
+		ReflectionTestUtils.setField(resilience, "circuitWindowMs", 100L);
+		ReflectionTestUtils.setField(resilience, "circuitOpenMs", 1L);
+		warmUp();
+		sleep(150);
+		for (int i = 0; i < 4; i++) {
+			resilience.executeAsync(TIMESTAMP, timeout -> CompletableFuture.<Pair<HttpStatusCode, String>>failedFuture(new IllegalStateException("down")))
+					.exceptionally(e -> null).join();
+		}
+		assertEquals(CircuitBreaker.State.OPEN, stats().get("state"));
+		sleep(5);
+		CompletableFuture<Pair<HttpStatusCode, String>> probe = new CompletableFuture<>();
+
+		CompletableFuture<Pair<HttpStatusCode, String>> response = resilience.executeAsync(TIMESTAMP, timeout -> attempt(probe));
+		assertEquals(CircuitBreaker.State.HALF_OPEN, stats().get("state"));
+		sleep(50);
+		probe.complete(PRIMARY);
+
+		assertEquals(PRIMARY, response.get(5, TimeUnit.SECONDS));
+		assertEquals(1, attempts.size());
+		assertEquals(CircuitBreaker.State.CLOSED, stats().get("state"));
+	}
+
+	private Duration timeoutOfNextCall() {
+		Duration[] seen = new Duration[1];
+		resilience.execute(TIMESTAMP, timeout -> {
+			seen[0] = timeout;
+			return PRIMARY;
+		});
+		return seen[0];
+	}
+
+	/**
+	 * Enough 1 ms calls for a p95, which is the hedge delay
+	 */
+	private void warmUp() {
+		for (int i = 0; i < LatencyWindow.MIN_SAMPLES; i++) {
+			resilience.executeAsync(TIMESTAMP, timeout -> CompletableFuture.supplyAsync(() -> {
+				sleep(1);
+				return PRIMARY;
+			})).join();
+		}
+	}
+
+	private CompletableFuture<Pair<HttpStatusCode, String>> attempt(CompletableFuture<Pair<HttpStatusCode, String>> attempt) {
+		attempts.add(attempt);
+		return attempt;
+	}
+
+	private void awaitAttempts(int count) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (attempts.size() < count && System.nanoTime() < deadline) {
+			sleep(1);
+		}
+		assertEquals(count, attempts.size());
+	}
+
+	/**
+	 * Hedge counters are updated by the attempt completing the call, after the caller is released
+	 */
+	private void awaitStat(String name, Object expected) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!expected.equals(stats().get(name)) && System.nanoTime() < deadline) {
+			sleep(1);
+		}
+		assertEquals(expected, stats().get(name));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> stats() {
+		return (Map<String, Object>) resilience.getStats().get("timestamp");
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
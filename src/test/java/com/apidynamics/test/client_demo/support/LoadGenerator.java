@@ -0,0 +1,125 @@
+package com.apidynamics.test.client_demo.support;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Closed-loop load generator: a fixed number of workers send GET requests back to back
+ * (following redirects like a browser) until the duration elapses.
+ */
+public final class LoadGenerator {
+
+	private LoadGenerator() {
+	}
+
+	/**
+	 * @param uri - URI to load
+	 * @param concurrency - number of concurrent workers
+	 * @param duration - how long to run
+	 * @param success - decides if a final response is a successful flow
+	 * @return - aggregated results
+	 */
+	public static Result run(URI uri, int concurrency, Duration duration, Predicate<HttpResponse<String>> success) throws Exception {
+		try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+			 HttpClient httpClient = HttpClient.newBuilder()
+					 .followRedirects(HttpClient.Redirect.NORMAL)
+					 .executor(workers)
+					 .build()) {
+			HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+			long start = System.nanoTime();
+			long deadline = start + duration.toNanos();
+			List<Future<WorkerResult>> futures = new ArrayList<>(concurrency);
+			for (int i = 0; i < concurrency; i++) {
+				futures.add(workers.submit(() -> {
+					WorkerResult worker = new WorkerResult();
+					while (System.nanoTime() < deadline) {
+						long sent = System.nanoTime();
+						try {
+							HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+							worker.record(System.nanoTime() - sent, success.test(response));
+						} catch (Exception e) {
+							worker.record(System.nanoTime() - sent, false);
+						}
+					}
+					return worker;
+				}));
+			}
+
+			long[] latencies = new long[0];
+			int successes = 0;
+			int requests = 0;
+			for (Future<WorkerResult> future : futures) {
+				WorkerResult worker = future.get();
+				latencies = concat(latencies, worker.latencies, worker.count);
+				successes += worker.successes;
+				requests += worker.count;
+			}
+			long elapsed = System.nanoTime() - start;
+			Arrays.sort(latencies);
+			return new Result(requests, successes, elapsed, percentile(latencies, 0.50), percentile(latencies, 0.99));
+		}
+	}
+
+	private static long[] concat(long[] a, long[] b, int bLength) {
+		long[] merged = Arrays.copyOf(a, a.length + bLength);
+		System.arraycopy(b, 0, merged, a.length, bLength);
+		return merged;
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+	}
+
+	/**
+	 * @param requests - completed flows
+	 * @param successes - flows accepted by the success predicate
+	 * @param elapsedNanos - wall clock time of the run
+	 * @param p50Nanos - median flow latency
+	 * @param p99Nanos - 99th percentile flow latency
+	 */
+	public record Result(int requests, int successes, long elapsedNanos, long p50Nanos, long p99Nanos) {
+
+		public double throughput() {
+			return requests * 1e9 / elapsedNanos;
+		}
+
+		public double successRate() {
+			return requests == 0 ? 0 : (double) successes / requests;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("requests=%d, throughput=%.1f/s, success=%.1f%%, p50=%.1fms, p99=%.1fms",
+					requests, throughput(), successRate() * 100, p50Nanos / 1e6, p99Nanos / 1e6);
+		}
+	}
+
+	private static final class WorkerResult {
+		private long[] latencies = new long[1024];
+		private int count;
+		private int successes;
+
+		private void record(long latency, boolean success) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = latency;
+			if (success) {
+				successes++;
+			}
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.apidynamics.test.client_demo.support;
+
+import com.apidynamics.test.client_demo.ClientDemoApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * End-to-end load harness: starts the offline stub adaptive-auth server and the client app wired to it,
+ * drives /timestamp (or the JSON /api/timestamp) at fixed concurrency and reports throughput, p50 / p99 latency
+ * and challenge success.
+ * Run with ./gradlew loadHarness, settings are system properties (see {@link Config#fromSystemProperties()}).
+ */
+public final class LoadHarness {
+
+	private LoadHarness() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		Config config = Config.fromSystemProperties();
+		System.out.println("load harness : " + config);
+		Report report = run(config);
+		System.out.println("client flows : " + report.load());
+		System.out.println("stub server  : " + report.stub());
+		System.exit(0);
+	}
+
+	public static Report run(Config config) throws Exception {
+		try (StubAdaptiveAuthServer stub = new StubAdaptiveAuthServer(config.stub());
+			 ConfigurableApplicationContext context = new SpringApplicationBuilder(ClientDemoApplication.class)
+					 .profiles(config.profileNames())
+					 .properties(
+							 "server.port=0",
+							 "spring.threads.virtual.enabled=" + config.virtualThreads(),
+							 "spring.datasource.url=jdbc:h2:mem:load-harness",
+							 "DEMO_SERVER_BASE_URL=" + stub.getBaseUrl(),
+							 "DEMO_SERVER_HTTP_MAX_CONNECTIONS=" + config.concurrency() * 2,
+							 "DEMO_SERVER_HTTP_MAX_CONNECTIONS_PER_ROUTE=" + config.concurrency() * 2,
+							 "REQUEST_JOURNAL_SAMPLE_RATE=0",
+							 "logging.level.com.apidynamics.test.client_demo=WARN",
+							 "logging.level.org.springframework.web.client=WARN")
+					 .run()) {
+			String port = context.getEnvironment().getProperty("local.server.port");
+			URI timestamp = URI.create("http://localhost:" + port + config.path() + "?token_type=" + config.tokenType());
+			Predicate<HttpResponse<String>> success = config.path().startsWith("/api/") ? LoadHarness::isTimestampJson : LoadHarness::isTimestampPage;
+			if (!config.warmup().isZero()) {
+				LoadGenerator.run(timestamp, config.concurrency(), config.warmup(), success);
+			}
+			StubAdaptiveAuthServer.Stats before = stub.getStats();
+			LoadGenerator.Result load = LoadGenerator.run(timestamp, config.concurrency(), config.duration(), success);
+			return new Report(load, minus(stub.getStats(), before));
+		}
+	}
+
+	static boolean isTimestampPage(HttpResponse<String> response) {
+		return response.statusCode() == 200 && response.body().contains("Current UTC timestamp");
+	}
+
+	private static boolean isTimestampJson(HttpResponse<String> response) {
+		return response.statusCode() == 200 && response.body().contains("\"timestamp\"");
+	}
+
+	private static StubAdaptiveAuthServer.Stats minus(StubAdaptiveAuthServer.Stats after, StubAdaptiveAuthServer.Stats before) {
+		return new StubAdaptiveAuthServer.Stats(after.challenges() - before.challenges(),
+				after.totpsGenerated() - before.totpsGenerated(),
+				after.validationsAccepted() - before.validationsAccepted(),
+				after.validationsDenied() - before.validationsDenied(),
+				after.errorsInjected() - before.errorsInjected());
+	}
+
+	/**
+	 * @param concurrency - concurrent client workers (load.concurrency)
+	 * @param duration - measured run (load.durationSeconds)
+	 * @param warmup - unmeasured run before it (load.warmupSeconds)
+	 * @param tokenType - TOTP strategy, self or server (load.tokenType)
+	 * @param virtualThreads - run the app on virtual threads (load.virtualThreads)
+	 * @param stub - stub latency, jitter, error and deny rates (stub.latencyMs, stub.jitterMs, stub.errorRate, stub.denyRate)
+	 * @param path - page or JSON API driven, /timestamp or /api/timestamp (load.path)
+	 * @param profiles - comma separated Spring profiles of the app, e.g. prod (load.profiles)
+	 */
+	public record Config(int concurrency, Duration duration, Duration warmup, String tokenType, boolean virtualThreads,
+						 StubAdaptiveAuthServer.Options stub, String path, String profiles) {
+
+		public Config(int concurrency, Duration duration, Duration warmup, String tokenType, boolean virtualThreads,
+					  StubAdaptiveAuthServer.Options stub) {
+			this(concurrency, duration, warmup, tokenType, virtualThreads, stub, "/timestamp", "");
+		}
+
+		public static Config fromSystemProperties() {
+			return new Config(
+					Integer.getInteger("load.concurrency", 100),
+					Duration.ofSeconds(Long.getLong("load.durationSeconds", 30)),
+					Duration.ofSeconds(Long.getLong("load.warmupSeconds", 5)),
+					System.getProperty("load.tokenType", "self"),
+					Boolean.parseBoolean(System.getProperty("load.virtualThreads", "false")),
+					new StubAdaptiveAuthServer.Options(
+							Long.getLong("stub.latencyMs", 20),
+							Long.getLong("stub.jitterMs", 10),
+							Double.parseDouble(System.getProperty("stub.errorRate", "0")),
+							Double.parseDouble(System.getProperty("stub.denyRate", "0"))),
+					System.getProperty("load.path", "/timestamp"),
+					System.getProperty("load.profiles", ""));
+		}
+
+		String[] profileNames() {
+			return Arrays.stream(profiles.split(",")).map(String::strip).filter(profile -> !profile.isEmpty()).toArray(String[]::new);
+		}
+	}
+
+	public record Report(LoadGenerator.Result load, StubAdaptiveAuthServer.Stats stub) {
+	}
+}
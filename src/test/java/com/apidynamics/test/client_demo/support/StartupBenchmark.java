@@ -0,0 +1,222 @@
+package com.apidynamics.test.client_demo.support;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Startup time and resident memory of the app per run mode and Spring profile. Each round starts the app in a fresh
+ * process wired to the offline stub adaptive-auth server, polls /timestamp until the first successful page and reads
+ * the process RSS (Linux /proc) at that point, along with the startup time Spring reports.
+ * Modes:
+ * <ul>
+ *     <li>jvm - the boot jar, extracted (java -Djarmode=tools ... extract)</li>
+ *     <li>cds - same with an AppCDS archive, created by a training run stopping after the context refresh</li>
+ *     <li>aot - same with Spring AOT initialization, the jar must be built with -Paot</li>
+ *     <li>native - the GraalVM native executable (./gradlew nativeCompile -Paot)</li>
+ * </ul>
+ * AOT and native run the bean definitions processed at build time, a profile other than the build time one
+ * is not supported there.
+ * Run with ./gradlew startupBenchmark [-Pstartup.modes=jvm,cds,aot,native] [-Pstartup.profiles=default,file]
+ * [-Pstartup.rounds=5] [-Pstartup.jvmArgs=...]
+ */
+public final class StartupBenchmark {
+
+	private static final Pattern STARTED = Pattern.compile("Started \\w+ in ([0-9.]+) seconds");
+	private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+	private StartupBenchmark() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> modes = split(System.getProperty("startup.modes", "jvm,cds"), ",");
+		List<String> profiles = split(System.getProperty("startup.profiles", "default,file"), ",");
+		int rounds = Integer.getInteger("startup.rounds", 5);
+		List<String> jvmArgs = split(System.getProperty("startup.jvmArgs", ""), "\\s+");
+		Path jar = Path.of(System.getProperty("startup.jar", "build/libs/client-demo-0.0.1-SNAPSHOT.jar"));
+		Path nativeExecutable = Path.of(System.getProperty("startup.native", "build/native/nativeCompile/client-demo"));
+		try (StubAdaptiveAuthServer stub = new StubAdaptiveAuthServer(0)) {
+			Path extracted = modes.stream().anyMatch(mode -> !mode.equals("native")) ? extract(jar) : null;
+			for (String mode : modes) {
+				for (String profile : profiles) {
+					List<Sample> samples = new ArrayList<>();
+					for (int round = 0; round < rounds; round++) {
+						samples.add(measure(command(mode, profile, jvmArgs, extracted, nativeExecutable), profile, stub.getBaseUrl()));
+					}
+					System.out.printf("%-7s %-10s : %s%n", mode, profile, Summary.of(samples));
+				}
+			}
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * @param command - app launch command of the mode
+	 * @param profile - Spring profile, "default" for none
+	 * @param stubBaseUrl - adaptive-auth server the app calls
+	 * @return - startup time reported by Spring, time to the first successful /timestamp and RSS at that point
+	 */
+	public static Sample measure(List<String> command, String profile, String stubBaseUrl) throws IOException, InterruptedException {
+		Path dir = Files.createTempDirectory("startup-benchmark");
+		Path log = dir.resolve("app.log");
+		int port = freePort();
+		List<String> launch = new ArrayList<>(command);
+		launch.addAll(List.of("--server.port=" + port, "--DEMO_SERVER_BASE_URL=" + stubBaseUrl,
+				"--CLIENT_STORE_FILE=" + dir.resolve("api-clients.log"), "--REQUEST_JOURNAL_ENABLED=false"));
+		if (!profile.equals("default")) {
+			launch.add("--spring.profiles.active=" + profile);
+		}
+		HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+		HttpRequest timestamp = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/timestamp?token_type=self")).build();
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(launch).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+		try {
+			while (System.nanoTime() - start < STARTUP_TIMEOUT.toNanos()) {
+				if (!process.isAlive()) {
+					throw new IllegalStateException("App exited with code " + process.exitValue() + " before serving /timestamp, see " + log);
+				}
+				try {
+					HttpResponse<String> response = httpClient.send(timestamp, HttpResponse.BodyHandlers.ofString());
+					if (LoadHarness.isTimestampPage(response)) {
+						double firstTimestampSeconds = (System.nanoTime() - start) / 1e9;
+						return new Sample(startedSeconds(log), firstTimestampSeconds, rssKb(process.pid()));
+					}
+				} catch (IOException e) {
+					// not listening yet
+				}
+				Thread.sleep(5);
+			}
+			throw new IllegalStateException("No successful /timestamp within " + STARTUP_TIMEOUT + ", see " + log);
+		} finally {
+			process.destroy();
+			if (!process.waitFor(10, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	private static List<String> command(String mode, String profile, List<String> jvmArgs, Path extracted, Path nativeExecutable)
+			throws IOException, InterruptedException {
+		if (mode.equals("native")) {
+			return List.of(nativeExecutable.toAbsolutePath().toString());
+		}
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmArgs);
+		switch (mode) {
+			case "jvm" -> {
+			}
+			case "cds" -> command.add("-XX:SharedArchiveFile=" + cdsArchive(extracted, profile));
+			case "aot" -> command.add("-Dspring.aot.enabled=true");
+			default -> throw new IllegalArgumentException("Unknown startup mode " + mode);
+		}
+		command.addAll(List.of("-jar", applicationJar(extracted).toString()));
+		return command;
+	}
+
+	/**
+	 * Extracted layout (application jar next to lib/), the class path of a CDS archive must not be nested jars
+	 */
+	private static Path extract(Path jar) throws IOException, InterruptedException {
+		Path destination = Files.createTempDirectory("startup-benchmark-app");
+		run(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(), "-Djarmode=tools", "-jar", jar.toAbsolutePath().toString(),
+				"extract", "--destination", destination.toString()));
+		return destination;
+	}
+
+	/**
+	 * One archive per profile, dumped at the exit of a training run stopping once the context is refreshed
+	 */
+	private static Path cdsArchive(Path extracted, String profile) throws IOException, InterruptedException {
+		Path archive = extracted.resolve("application-" + profile + ".jsa");
+		if (!Files.exists(archive)) {
+			List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+					"-XX:ArchiveClassesAtExit=" + archive, "-Dspring.context.exit=onRefresh",
+					"-jar", applicationJar(extracted).toString(), "--server.port=0",
+					"--CLIENT_STORE_FILE=" + extracted.resolve("training-clients.log"), "--REQUEST_JOURNAL_ENABLED=false"));
+			if (!profile.equals("default")) {
+				command.add("--spring.profiles.active=" + profile);
+			}
+			run(command);
+		}
+		return archive;
+	}
+
+	private static Path applicationJar(Path extracted) throws IOException {
+		try (var files = Files.list(extracted)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".jar")).findFirst()
+					.orElseThrow(() -> new IllegalStateException("No application jar in " + extracted));
+		}
+	}
+
+	private static void run(List<String> command) throws IOException, InterruptedException {
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+		if (process.waitFor() != 0) {
+			throw new IllegalStateException("Failed with exit code " + process.exitValue() + " : " + command);
+		}
+	}
+
+	/**
+	 * @return - startup time in the "Started ..." log line, NaN if there is none
+	 */
+	private static double startedSeconds(Path log) throws IOException {
+		for (String line : Files.readAllLines(log)) {
+			Matcher started = STARTED.matcher(line);
+			if (started.find()) {
+				return Double.parseDouble(started.group(1));
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * @return - resident set size in KB, -1 where /proc is not available
+	 */
+	private static long rssKb(long pid) throws IOException {
+		Path status = Path.of("/proc", Long.toString(pid), "status");
+		if (!Files.exists(status)) {
+			return -1;
+		}
+		for (String line : Files.readAllLines(status)) {
+			if (line.startsWith("VmRSS:")) {
+				return Long.parseLong(line.replaceAll("\\D", ""));
+			}
+		}
+		return -1;
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static List<String> split(String value, String separator) {
+		return value.isBlank() ? List.of() : Arrays.stream(value.strip().split(separator)).map(String::strip).toList();
+	}
+
+	public record Sample(double startedSeconds, double firstTimestampSeconds, long rssKb) {
+	}
+
+	public record Summary(int rounds, double medianStartedSeconds, double medianFirstTimestampSeconds, long medianRssMb) {
+
+		static Summary of(List<Sample> samples) {
+			double[] started = samples.stream().mapToDouble(Sample::startedSeconds).sorted().toArray();
+			double[] firstTimestamp = samples.stream().mapToDouble(Sample::firstTimestampSeconds).sorted().toArray();
+			long[] rss = samples.stream().mapToLong(Sample::rssKb).sorted().toArray();
+			return new Summary(samples.size(), started[started.length / 2], firstTimestamp[firstTimestamp.length / 2], rss[rss.length / 2] / 1024);
+		}
+	}
+}
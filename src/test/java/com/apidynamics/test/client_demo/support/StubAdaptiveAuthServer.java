@@ -0,0 +1,216 @@
+package com.apidynamics.test.client_demo.support;
+
+import com.apidynamics.test.client_demo.service.TOTPService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Offline stand-in for the adaptive authentication demo server.
+ * Every /api/timestamp call is challenged with a 401 and a transaction_id unless a previous
+ * TOTP validation of the same client left a credit, so each client flow is
+ * timestamp (401) -> [generateClientTotp] -> validateClientTotp -> timestamp (200).
+ * Self and server TOTPs are checked with the same algorithm as {@link TOTPService}.
+ * It also answers httpbin /headers calls, with the same latency, so HTTPBIN_BASE_URL can point to it.
+ * Latency (fixed plus random jitter), injected 503 errors and denied validations are configurable through {@link Options}.
+ */
+public class StubAdaptiveAuthServer implements AutoCloseable {
+
+	private static final String CLIENT_ID_HEADER = "X-API-Dynamics-Client-Id";
+
+	private final HttpServer server;
+	private final Options options;
+	private final Map<String, String> transactions = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> credits = new ConcurrentHashMap<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	private final LongAdder challenges = new LongAdder();
+	private final LongAdder totpsGenerated = new LongAdder();
+	private final LongAdder validationsAccepted = new LongAdder();
+	private final LongAdder validationsDenied = new LongAdder();
+	private final LongAdder errorsInjected = new LongAdder();
+
+	/**
+	 * @param latencyMillis - latency added to every call
+	 */
+	public StubAdaptiveAuthServer(long latencyMillis) throws IOException {
+		this(new Options(latencyMillis, 0, 0, 0));
+	}
+
+	public StubAdaptiveAuthServer(Options options) throws IOException {
+		this.options = options;
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+		this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		this.server.createContext("/api/timestamp", exchange -> handle(exchange, this::timestamp));
+		this.server.createContext("/adaptiveAuthentication/generateClientTotp", exchange -> handle(exchange, this::generateClientTotp));
+		this.server.createContext("/adaptiveAuthentication/validateClientTotp", exchange -> handle(exchange, this::validateClientTotp));
+		this.server.createContext("/headers", exchange -> handle(exchange, this::headers));
+		this.server.start();
+	}
+
+	public String getBaseUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * @return - highest number of calls served at the same time
+	 */
+	public int getPeakInFlight() {
+		return peakInFlight.get();
+	}
+
+	public void resetPeakInFlight() {
+		peakInFlight.set(inFlight.get());
+	}
+
+	public Stats getStats() {
+		return new Stats(challenges.sum(), totpsGenerated.sum(), validationsAccepted.sum(), validationsDenied.sum(), errorsInjected.sum());
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	private Response timestamp(HttpExchange exchange) {
+		String clientId = exchange.getRequestHeaders().getFirst(CLIENT_ID_HEADER);
+		AtomicInteger clientCredits = clientId != null ? credits.get(clientId) : null;
+		if (clientCredits != null && clientCredits.getAndUpdate(c -> c > 0 ? c - 1 : c) > 0) {
+			return new Response(200, "{\"timestamp\":\"" + Instant.now() + "\"}");
+		}
+		String tid = UUID.randomUUID().toString();
+		if (clientId != null) {
+			transactions.put(tid, clientId);
+		}
+		challenges.increment();
+		return new Response(401, "{\"transaction_id\":\"" + tid + "\"}");
+	}
+
+	private Response headers(HttpExchange exchange) {
+		StringBuilder body = new StringBuilder("{\"headers\":{");
+		exchange.getRequestHeaders().forEach((name, values) -> body.append(body.length() > 12 ? "," : "")
+				.append('"').append(name).append("\":\"").append(values.get(0).replace("\\", "\\\\").replace("\"", "\\\"")).append('"'));
+		return new Response(200, body.append("}}").toString());
+	}
+
+	private Response generateClientTotp(HttpExchange exchange) {
+		String clientId = transactions.get(query(exchange).get("tid"));
+		if (clientId == null) {
+			return new Response(404, "{\"error\":\"unknown transaction\"}");
+		}
+		totpsGenerated.increment();
+		return new Response(200, "{\"totp\":\"" + TOTPService.getOTP(hexKey(clientId)) + "\"}");
+	}
+
+	private Response validateClientTotp(HttpExchange exchange) {
+		Map<String, String> query = query(exchange);
+		String clientId = transactions.remove(query.get("tid"));
+		if (clientId == null || !TOTPService.validate(hexKey(clientId), query.get("totp")) || chance(options.denyRate())) {
+			validationsDenied.increment();
+			return new Response(401, "{\"error\":\"invalid totp\",\"validation_result\":{\"score\":0,\"decision\":\"DENY\"}}");
+		}
+		validationsAccepted.increment();
+		credits.computeIfAbsent(clientId, c -> new AtomicInteger()).incrementAndGet();
+		return new Response(200, "{\"validation_result\":{\"score\":100,\"decision\":\"ALLOW\"}}");
+	}
+
+	private void handle(HttpExchange exchange, Function<HttpExchange, Response> handler) throws IOException {
+		peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+		try {
+			long latencyMillis = options.latencyMillis()
+					+ (options.latencyJitterMillis() > 0 ? ThreadLocalRandom.current().nextLong(options.latencyJitterMillis() + 1) : 0);
+			if (latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+			Response response;
+			if (chance(options.errorRate())) {
+				errorsInjected.increment();
+				response = new Response(503, "{\"error\":\"injected error\"}");
+			} else {
+				response = handler.apply(exchange);
+			}
+			byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(response.status(), body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			inFlight.decrementAndGet();
+			exchange.close();
+		}
+	}
+
+	private static boolean chance(double rate) {
+		return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+	}
+
+	private static Map<String, String> query(HttpExchange exchange) {
+		Map<String, String> params = new HashMap<>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (String param : query.split("&")) {
+				int eq = param.indexOf('=');
+				if (eq > 0) {
+					params.put(param.substring(0, eq), URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return params;
+	}
+
+	private static String hexKey(String clientId) {
+		return HexFormat.of().formatHex(clientId.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private record Response(int status, String body) {
+	}
+
+	/**
+	 * @param latencyMillis - latency added to every call
+	 * @param latencyJitterMillis - random extra latency, up to this value
+	 * @param errorRate - share of calls answered with a 503
+	 * @param denyRate - share of valid TOTP validations denied anyway
+	 */
+	public record Options(long latencyMillis, long latencyJitterMillis, double errorRate, double denyRate) {
+	}
+
+	/**
+	 * @param challenges - 401 challenges sent by /api/timestamp
+	 * @param totpsGenerated - server generated TOTPs
+	 * @param validationsAccepted - accepted TOTP validations
+	 * @param validationsDenied - denied TOTP validations
+	 * @param errorsInjected - injected 503 errors
+	 */
+	public record Stats(long challenges, long totpsGenerated, long validationsAccepted, long validationsDenied, long errorsInjected) {
+
+		public double challengeSuccessRate() {
+			long validations = validationsAccepted + validationsDenied;
+			return validations == 0 ? 0 : (double) validationsAccepted / validations;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("challenges=%d, server totps=%d, validations accepted=%d denied=%d (challenge success=%.1f%%), injected errors=%d",
+					challenges, totpsGenerated, validationsAccepted, validationsDenied, challengeSuccessRate() * 100, errorsInjected);
+		}
+	}
+}